@@ -1,5 +1,6 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.lang.Math;
 
 /**
@@ -7,54 +8,120 @@ import java.lang.Math;
  * I translated it into Java.
  */
 
+/**
+ * A FIFO tabu of at most size ids in [0, universe). The ids are kept in a ring buffer, and stamp[id] is the
+ * number of pushes up to and including the last push of id, so id is in the tabu iff it was pushed after
+ * the last popped entry. No operation allocates or boxes, and clear() is O(1).
+ */
 class Tabu {
-    private int size;
-    private HashSet<Integer> tabuSet;
-    private LinkedList<Integer> tabuQueue;
+    private final int size;
+    private final int[] queue;
+    private final int[] stamp;
+    private int pushed;
+    private int popped;
 
-    Tabu(int size) {
+    Tabu(int size, int universe) {
         this.size = size;
-        tabuSet = new HashSet<>();
-        tabuQueue = new LinkedList<>();
+        queue = new int[size + 1];
+        stamp = new int[universe];
     }
 
+    /**
+     * Like the set it replaces, an id outside [0, universe) such as -1 is never in the tabu.
+     */
     boolean contains(int node) {
-        return tabuSet.contains(node);
+        return node >= 0 && node < stamp.length && stamp[node] > popped;
     }
 
-    void push(int node) {
-        if (tabuSet.contains(node)) {
-            return;
+    /**
+     * @return the id which left the tabu to make room for node, or -1.
+     */
+    int push(int node) {
+        if (contains(node)) {
+            return -1;
         }
-        tabuSet.add(node);
-        tabuQueue.addLast(node);
-        if (tabuSet.size() > size) {
-            pop();
+        queue[pushed % queue.length] = node;
+        stamp[node] = ++pushed;
+        if (pushed - popped > size) {
+            return pop();
         }
+        return -1;
     }
 
     int pop() {
-        int node = tabuQueue.removeFirst();
-        tabuSet.remove(node);
-        return node;
+        if (pushed == popped) {
+            throw new NoSuchElementException();
+        }
+        return queue[popped++ % queue.length];
+    }
+
+    /**
+     * Empty the tabu. The stamps only have to be reset once the counters get large.
+     */
+    void clear() {
+        if (pushed > Integer.MAX_VALUE / 2) {
+            Arrays.fill(stamp, 0);
+            pushed = 0;
+        }
+        popped = pushed;
     }
 }
 
+/**
+ * Each instance is one tabu search trajectory with its own coloring, tabu, random generators and tabu size,
+ * so several of them can run on separate threads. They share the best coloring found so far: when any of them
+ * finds a feasible coloring with k colors, all of them move on to k - 1 colors.
+ */
 public class AdvancedSolver {
     private static int nodeCount;
     private static int edgeCount;
-    private static ArrayList<ArrayList<Integer>> edges;
-    private static int[] solution;
-    private static int minValue;
+    private static Graph graph;
 
-    private static int[] color; // current coloring for the graph
-    private static int[] violation; // number of neighbors which have the same color as the node
-    private static int numViolation;
-    private static Tabu tabu;
-    private static Random random = new Random();
-    private static Random removeRandom = new Random();
+    // the best coloring found by any worker, minValue and solution are only updated together in offer()
+    private static int[] solution;
+    private static volatile int minValue;
+    private static int lowerBound = 1; // the size of a clique of the whole graph, no coloring has fewer colors
+    private static AtomicInteger failures = new AtomicInteger(); // failed attempts of all workers at minValue - 1
+    private static int threads = 1;
+    private static int probes = 1; // how many color counts below minValue the workers try at the same time
+    private static boolean fullNeighborhood = false; // evaluate every (node, color) move of the conflicting nodes
+
+    // with populationSize > 1, the workers share a pool of colorings with populationColors colors and improve
+    // crossovers of them instead of only the best coloring, the pool is guarded by the class lock
+    private static int populationSize = 0;
+    private static int[][] population;
+    private static int[] populationConflicts;
+    private static int populationColors;
+    private static int populationFilled;
+
+    private int[] color; // current coloring for the graph
+    private int[] violation; // number of neighbors which have the same color as the node
+    private int numViolation;
+    // nodes sorted by violation, bucket v is order[bucketStart[v]], ..., order[bucketStart[v + 1] - 1],
+    // and position[u] is the index of u in order, so moving a node to the next bucket is a single swap
+    private int[] order;
+    private int[] position;
+    private int[] bucketStart;
+    // gamma[u * stride + c] is the number of neighbors of u with color c, stride is the number of colors
+    // available when the attempt started, so the cost of moving u to c is a lookup
+    private int[] gamma;
+    private int stride;
+    private int[] tabuUntil; // for the full neighborhood, the iteration until which the (node, color) move is tabu
+    private final Tabu tabu;
+    private int[] parentA; // the parents of the next crossover, copied out of the population
+    private int[] parentB;
+    private final int skip; // this worker tries minValue - 1 - skip colors, so several counts are tried at once
+    private final Random random;
+    private final Random removeRandom;
+
+    AdvancedSolver(int tabuSize, int skip, long seed) {
+        this.skip = skip;
+        tabu = new Tabu(tabuSize, nodeCount);
+        random = new Random(seed);
+        removeRandom = new Random(seed + 1);
+    }
 
-    private static int sample(int start, int end) {
+    private int sample(int start, int end) {
         assert end >= start : "Invalid uniform distribution";
         return start + random.nextInt(end - start + 1);
     }
@@ -62,33 +129,66 @@ public class AdvancedSolver {
     /**
      * @return the next node to change color.
      */
-    private static int selectNextNode() {
-        int maxViolation = 0;
-        ArrayList<Integer> candidates = new ArrayList<>();
-
-        // Select node with maximum violation with neighbors
-        for (int i = 0; i < nodeCount; i++) {
-            if (violation[i] == 0) {
-                continue;
-             }
-            if (tabu.contains(i)) { // Do not consider nodes in the tabu
+    private int selectNextNode() {
+        // Select node with maximum violation with neighbors, walking down from the highest bucket
+        // until one has a node which is not in the tabu
+        for (int v = violation[order[nodeCount - 1]]; v > 0; v--) {
+            int begin = bucketStart[v];
+            int end = bucketStart[v + 1] - 1;
+            if (begin > end) {
                 continue;
             }
-            if (maxViolation == violation[i]) {
-                candidates.add(i);
+
+            // Uniformly sample a node from the bucket, most of it is usually not in the tabu
+            for (int attempt = 0; attempt < SAMPLE_ATTEMPTS; attempt++) {
+                int node = order[sample(begin, end)];
+                if (!tabu.contains(node)) {
+                    return node;
+                }
+            }
+
+            // Otherwise sample among the nodes of the bucket which are not in the tabu
+            int node = -1;
+            int seen = 0;
+            for (int k = begin; k <= end; k++) {
+                if (!tabu.contains(order[k]) && random.nextInt(++seen) == 0) {
+                    node = order[k];
+                }
             }
-            else if (maxViolation < violation[i]) {
-                maxViolation = violation[i];
-                candidates.clear();
-                candidates.add(i);
+            if (node >= 0) {
+                return node;
             }
         }
-        if (candidates.isEmpty()) {
-            return -1;
-        }
+        return -1;
+    }
 
-        // Uniformly sample a node from the candidates
-        return candidates.get(sample(0, candidates.size() - 1));
+    /**
+     * Move node from bucket violation[node] to violation[node] + 1.
+     */
+    private void increase(int node) {
+        int last = bucketStart[violation[node] + 1] - 1;
+        swap(node, order[last]);
+        bucketStart[violation[node] + 1]--;
+        violation[node]++;
+    }
+
+    /**
+     * Move node from bucket violation[node] to violation[node] - 1.
+     */
+    private void decrease(int node) {
+        int first = bucketStart[violation[node]];
+        swap(node, order[first]);
+        bucketStart[violation[node]]++;
+        violation[node]--;
+    }
+
+    private void swap(int u, int v) {
+        int i = position[u];
+        int j = position[v];
+        order[i] = v;
+        order[j] = u;
+        position[v] = i;
+        position[u] = j;
     }
 
     /**
@@ -96,79 +196,174 @@ public class AdvancedSolver {
      * @param node: the node to change color.
      * @param availableColors: the number of colors we can use for now.
      */
-    private static void changeColor(int node, int availableColors) {
-        int[] colorCount = new int[availableColors];
-        ArrayList<Integer> neighbors = edges.get(node);
-
-        for (int neighbor : neighbors) {
-            colorCount[color[neighbor]]++;
-        }
+    private void changeColor(int node, int availableColors) {
+        int row = node * stride;
         int minViolation = nodeCount;
-        ArrayList<Integer> candidates = new ArrayList<>();
+        int newColor = -1;
+        int ties = 0;
 
-        // Select color with least violation with neighbors
+        // Select color with least violation with neighbors, uniformly sampled among the ties
         for (int c = 0; c < availableColors; c++) {
             if (c == color[node]) {
                 continue;
             }
-            if (minViolation > colorCount[c]) {
-                minViolation = colorCount[c];
-                candidates.clear();
-                candidates.add(c);
+            if (minViolation > gamma[row + c]) {
+                minViolation = gamma[row + c];
+                newColor = c;
+                ties = 1;
             }
-            else if (minViolation == colorCount[c]) {
-                candidates.add(c);
+            else if (minViolation == gamma[row + c] && random.nextInt(++ties) == 0) {
+                newColor = c;
             }
         }
+        if (newColor == -1) { // there is no other color
+            return;
+        }
+        moveColor(node, newColor);
+    }
 
-        // Uniformly sample a color from the candidates
-        int newColor = candidates.get(sample(0, candidates.size() - 1));
-        for (int neighbor : neighbors) {
-            if (color[neighbor] == color[node]) {
-                violation[neighbor]--;
-                violation[node]--;
+    /**
+     * Recolor node to newColor, updating violation, its buckets and the gamma rows of the neighbors.
+     */
+    private void moveColor(int node, int newColor) {
+        int oldColor = color[node];
+        for (int k = graph.offsets[node]; k < graph.offsets[node + 1]; k++) {
+            int neighbor = graph.neighbors[k];
+            int row = neighbor * stride;
+            gamma[row + oldColor]--;
+            gamma[row + newColor]++;
+            if (color[neighbor] == oldColor) {
+                decrease(neighbor);
+                decrease(node);
                 numViolation -= 2;
             }
             else if (color[neighbor] == newColor) {
-                violation[neighbor]++;
-                violation[node]++;
+                increase(neighbor);
+                increase(node);
                 numViolation += 2;
             }
         }
         color[node] = newColor;
     }
 
+    /**
+     * One TabuCol iteration: apply the best (node, color) move over all conflicting nodes and all colors.
+     * A move is tabu for a while after its node left that color, unless it gives a new best for this attempt.
+     * @return the number of conflicting edges after the move.
+     */
+    private int bestMove(int iteration, int availableColors, int bestConflicts) {
+        int conflicts = numViolation / 2;
+        int bestDelta = Integer.MAX_VALUE;
+        int bestNode = -1;
+        int bestColor = -1;
+        int ties = 0;
+
+        // the conflicting nodes are the buckets above 0
+        for (int k = bucketStart[1]; k < nodeCount; k++) {
+            int node = order[k];
+            int row = node * stride;
+            int current = gamma[row + color[node]];
+            for (int c = 0; c < availableColors; c++) {
+                if (c == color[node]) {
+                    continue;
+                }
+                int delta = gamma[row + c] - current;
+                if (delta > bestDelta) {
+                    continue;
+                }
+                if (tabuUntil[row + c] > iteration && conflicts + delta >= bestConflicts) {
+                    continue;
+                }
+                if (delta < bestDelta) {
+                    bestDelta = delta;
+                    bestNode = node;
+                    bestColor = c;
+                    ties = 1;
+                }
+                else if (random.nextInt(++ties) == 0) {
+                    bestNode = node;
+                    bestColor = c;
+                }
+            }
+        }
+
+        if (bestNode == -1) { // every move is tabu, move a random conflicting node to a random color
+            if (availableColors < 2) {
+                return conflicts;
+            }
+            bestNode = order[sample(bucketStart[1], nodeCount - 1)];
+            bestColor = (color[bestNode] + sample(1, availableColors - 1)) % availableColors;
+        }
+        int tenure = random.nextInt(TENURE_BASE) + (int) (TENURE_FACTOR * (nodeCount - bucketStart[1]));
+        tabuUntil[bestNode * stride + color[bestNode]] = iteration + tenure;
+        moveColor(bestNode, bestColor);
+        return numViolation / 2;
+    }
+
     /**
      * Compute how many violations this coloring produces.
      */
-    private static void calcViolation() {
-        violation = new int[nodeCount];
+    private void calcViolation(int availableColors) {
+        if (violation == null) {
+            int maxDegree = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                maxDegree = Math.max(maxDegree, graph.degree(i));
+            }
+            violation = new int[nodeCount];
+            order = new int[nodeCount];
+            position = new int[nodeCount];
+            bucketStart = new int[maxDegree + 2];
+            // the number of colors only goes down, so the first attempt allocates the largest table
+            gamma = new int[nodeCount * availableColors];
+            tabuUntil = fullNeighborhood ? new int[nodeCount * availableColors] : null;
+        }
+        stride = availableColors;
         numViolation = 0;
+        Arrays.fill(bucketStart, 0);
+        Arrays.fill(gamma, 0, nodeCount * stride, 0);
         for (int i = 0; i < nodeCount; i++) {
-            int ct = 0;
-            for (int neighbor : edges.get(i)) {
-                ct += color[i] == color[neighbor] ? 1 : 0;
+            int row = i * stride;
+            for (int k = graph.offsets[i]; k < graph.offsets[i + 1]; k++) {
+                gamma[row + color[graph.neighbors[k]]]++;
             }
+            int ct = gamma[row + color[i]];
             violation[i] = ct;
             numViolation += ct;
+            bucketStart[ct + 1]++;
+        }
+
+        // counting sort of the nodes into their buckets
+        for (int v = 1; v < bucketStart.length; v++) {
+            bucketStart[v] += bucketStart[v - 1];
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            position[i] = bucketStart[violation[i]]++;
+            order[position[i]] = i;
         }
+        for (int v = bucketStart.length - 1; v > 0; v--) {
+            bucketStart[v] = bucketStart[v - 1];
+        }
+        bucketStart[0] = 0;
     }
 
     /**
      * Check if it is possible to find a solution with availableColors.
-     * @param tabuSize: size of the tabu.
      * @param availableColors: we can only choose from [0, availableColors) to color a node.
      * @return whether it is feasible in limited steps.
      */
-    private static boolean isFeasible(int tabuSize, int availableColors) {
+    private boolean isFeasible(int availableColors) {
         // We only allow the program to change the color for limited steps.
         int limit = 50000;
         int ct = 0;
 
-        calcViolation();
+        calcViolation(availableColors);
+        if (fullNeighborhood) {
+            return isFeasibleFull(limit, availableColors);
+        }
 
-        tabu = new Tabu(tabuSize);
-        while (ct < limit && numViolation > 0) {
+        tabu.clear();
+        // Give up as soon as another worker has found a coloring with availableColors
+        while (ct < limit && numViolation > 0 && minValue > availableColors) {
             int node = selectNextNode();
 
             // If we cannot find a node, the tabu list may be too long, pop one node
@@ -185,17 +380,6 @@ public class AdvancedSolver {
         return numViolation == 0;
     }
 
-    /**
-     * Randomize colors for all nodes. This is used to initialize the solver.
-     * @param availableColors: we can only choose from [0, availableColors) to color a node.
-     */
-    private static void randomizeColor(int availableColors) {
-        color = new int[nodeCount];
-        for (int i = 0; i < color.length; i++) {
-            color[i] = sample(0, availableColors - 1);
-        }
-    }
-
     /**
      * Remove a color from current color choice.
      * It works like this, suppose there are total 10 colors from 0 ~ 9, the current color choice is:
@@ -206,7 +390,7 @@ public class AdvancedSolver {
      * 6 1 4 2 3 8 0 3 1 7 4 8 0 4
      * @param availableColors: we can only choose from [0, availableColors) to color a node.
      */
-    private static void removeColor(int availableColors) {
+    private void removeColor(int availableColors) {
         int toRemove = removeRandom.nextInt(availableColors);
         for (int i = 0; i < color.length; i++) {
             if (color[i] == toRemove) {
@@ -218,37 +402,224 @@ public class AdvancedSolver {
         }
     }
 
+    /**
+     * Publish a feasible coloring if it uses fewer colors than the best one.
+     */
+    private static synchronized void offer(int colors, int[] coloring) {
+        if (colors < minValue) {
+            solution = coloring.clone();
+            minValue = colors;
+            failures.set(0);
+        }
+    }
+
+    private static synchronized int[] bestSolution() {
+        return solution.clone();
+    }
+
+    /**
+     * Same as the loop of isFeasible, but with the full (node, color) neighborhood and a tabu on the moves.
+     */
+    private boolean isFeasibleFull(int limit, int availableColors) {
+        Arrays.fill(tabuUntil, 0, nodeCount * stride, 0);
+        int bestConflicts = numViolation / 2;
+        for (int ct = 0; ct < limit && numViolation > 0 && minValue > availableColors; ct++) {
+            bestConflicts = Math.min(bestConflicts, bestMove(ct, availableColors, bestConflicts));
+        }
+        return numViolation == 0;
+    }
+
     /**
      * Using local search to find a solution.
+     * We always try one color less than the best coloring of all workers, starting from that coloring with a random
+     * color removed, and stop when the workers together failed retryLimit times.
+     */
+    private void search() {
+        int retryLimit = 100 + nodeCount / 20;
+        while (failures.get() < retryLimit) {
+            int best = minValue;
+            if (best <= lowerBound) {
+                return;
+            }
+            int target = Math.max(lowerBound, best - 1 - skip);
+            color = bestSolution();
+            for (int k = best; k > target; k--) {
+                removeColor(k);
+            }
+            // isFeasible gives up as soon as another worker finds a coloring with target colors or less
+            if (isFeasible(target)) {
+                offer(target, color);
+            }
+            else if (minValue == best && target == best - 1) {
+                // only count the attempts at best - 1 which were not cut short by another worker
+                failures.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Same as search, but once the population for minValue - 1 colors is full, each attempt starts from
+     * a crossover of two colorings of the population instead of the best coloring with one color removed.
+     * The colorings which are still not feasible after the tabu search go back into the population.
+     */
+    private void evolve() {
+        int retryLimit = 100 + nodeCount / 20;
+        while (failures.get() < retryLimit) {
+            int best = minValue;
+            if (best <= lowerBound) {
+                return;
+            }
+            if (selectParents(best - 1, this)) {
+                crossover(best - 1);
+            }
+            else {
+                color = bestSolution();
+                removeColor(best);
+            }
+            if (isFeasible(best - 1)) {
+                offer(best - 1, color);
+            }
+            else if (minValue == best) {
+                failures.incrementAndGet();
+                insert(best - 1, color, numViolation / 2);
+            }
+        }
+    }
+
+    /**
+     * Greedy partition crossover (GPX): color c takes the largest color class of parent A (c even) or parent B
+     * (c odd) among the nodes without a color yet, the nodes left at the end get a random color.
+     * @param availableColors: the number of colors of both parents and of the child.
      */
-    private static void search() {
-        randomizeColor(nodeCount);
-        int tabuSize = nodeCount / 10;
-        solution = new int[nodeCount];
-        minValue = nodeCount;
-        for (int availableColors = nodeCount; availableColors > 0; availableColors--) {
-            // Retry if no feasible solution is found in limited steps
-            int retryLimit = 100 + nodeCount / 20;
-            int retryCount = 0;
-            while (retryCount < retryLimit) {
-                if (isFeasible(tabuSize, availableColors)) {
-                    solution = color.clone();
-                    minValue = availableColors;
-                    removeColor(availableColors);
-                    calcViolation();
-                    break;
+    private void crossover(int availableColors) {
+        color = new int[nodeCount];
+        Arrays.fill(color, -1);
+        int[] classSize = new int[availableColors];
+        for (int c = 0; c < availableColors; c++) {
+            int[] parent = c % 2 == 0 ? parentA : parentB;
+            Arrays.fill(classSize, 0);
+            int largest = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                if (color[i] < 0 && ++classSize[parent[i]] > classSize[largest]) {
+                    largest = parent[i];
                 }
-                color = solution.clone();
-                removeColor(minValue);
-                calcViolation();
-                retryCount++;
             }
-            if (retryCount >= retryLimit) {
+            for (int i = 0; i < nodeCount; i++) {
+                if (color[i] < 0 && parent[i] == largest) {
+                    color[i] = c;
+                }
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            if (color[i] < 0) {
+                color[i] = sample(0, availableColors - 1);
+            }
+        }
+    }
+
+    /**
+     * Copy two different colorings of the population into the parents of worker.
+     * @return false if the population for colors is not full yet, then the worker should add a new coloring.
+     */
+    private static synchronized boolean selectParents(int colors, AdvancedSolver worker) {
+        if (populationColors != colors) { // a coloring with colors + 1 was just found, start over
+            populationColors = colors;
+            populationFilled = 0;
+        }
+        if (populationFilled < populationSize) {
+            return false;
+        }
+        if (worker.parentA == null) {
+            worker.parentA = new int[nodeCount];
+            worker.parentB = new int[nodeCount];
+        }
+        int a = worker.random.nextInt(populationSize);
+        int b = (a + 1 + worker.random.nextInt(populationSize - 1)) % populationSize;
+        System.arraycopy(population[a], 0, worker.parentA, 0, nodeCount);
+        System.arraycopy(population[b], 0, worker.parentB, 0, nodeCount);
+        return true;
+    }
+
+    /**
+     * Add a coloring with colors colors and conflicts conflicting edges to the population, replacing the worst one
+     * when the population is full. Colorings for a number of colors the population has moved on from are dropped.
+     */
+    private static synchronized void insert(int colors, int[] coloring, int conflicts) {
+        if (colors != populationColors) {
+            return;
+        }
+        int slot = populationFilled;
+        if (populationFilled < populationSize) {
+            populationFilled++;
+        }
+        else {
+            slot = 0;
+            for (int i = 1; i < populationSize; i++) {
+                if (populationConflicts[i] > populationConflicts[slot]) {
+                    slot = i;
+                }
+            }
+            if (populationConflicts[slot] < conflicts) {
                 return;
             }
         }
+        population[slot] = coloring.clone();
+        populationConflicts[slot] = conflicts;
     }
 
+    /**
+     * Run the search with threads workers, each with its own seed and tabu size. With probes > 1, worker w
+     * tries w % probes colors fewer than the others, so the spare workers skip ahead of the plain descent.
+     */
+    private static void searchPortfolio() {
+        // start from the DSATUR coloring instead of the trivial one, where every node has its own color
+        solution = graph.dsatur();
+        minValue = Peeling.colors(solution);
+        failures.set(0);
+        population = new int[populationSize][];
+        populationConflicts = new int[populationSize];
+        populationColors = -1;
+        populationFilled = 0;
+
+        long seed = new Random().nextLong();
+        AdvancedSolver[] workers = new AdvancedSolver[threads];
+        for (int w = 0; w < threads; w++) {
+            // nodeCount / 10 for the first worker, 5%, 15% or 20% of the nodes for the others
+            int tabuSize = Math.max(1, nodeCount * TABU_PERCENT[w % TABU_PERCENT.length] / 100);
+            workers[w] = new AdvancedSolver(tabuSize, w % probes, seed + 2 * w);
+        }
+        if (threads == 1) {
+            if (populationSize > 1) {
+                workers[0].evolve();
+            }
+            else {
+                workers[0].search();
+            }
+            return;
+        }
+
+        Thread[] pool = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            pool[w] = new Thread(populationSize > 1 ? workers[w]::evolve : workers[w]::search);
+            pool[w].start();
+        }
+        for (Thread thread : pool) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static final int[] TABU_PERCENT = {10, 5, 15, 20};
+    private static final int SAMPLE_ATTEMPTS = 4; // random picks from a bucket before scanning it
+    // TabuCol tenure: a random part plus a share of the conflicting nodes
+    private static final int TENURE_BASE = 10;
+    private static final double TENURE_FACTOR = 0.6;
+
     public static void main(String[] args) {
         try {
             solve(args);
@@ -268,6 +639,18 @@ public class AdvancedSolver {
             if(arg.startsWith("-file=")){
                 fileName = arg.substring(6);
             }
+            else if(arg.startsWith("-threads=")){
+                threads = Integer.parseInt(arg.substring(9));
+            }
+            else if(arg.equals("-tabucol")){
+                fullNeighborhood = true;
+            }
+            else if(arg.startsWith("-probes=")){
+                probes = Math.max(1, Integer.parseInt(arg.substring(8)));
+            }
+            else if(arg.startsWith("-population=")){
+                populationSize = Integer.parseInt(arg.substring(12));
+            }
         }
         if(fileName == null)
             return;
@@ -286,30 +669,22 @@ public class AdvancedSolver {
             input.close();
         }
 
-        // parse the data in the file
-        String[] firstLine = lines.get(0).split("\\s+");
-        nodeCount = Integer.parseInt(firstLine[0]);
-        edgeCount = Integer.parseInt(firstLine[1]);
-
-        edges = new ArrayList<>();
-        for (int i = 0; i < nodeCount; i++) {
-            edges.add(new ArrayList<>());
-        }
-
-        for (int i = 1; i <= edgeCount; i++) {
-            String line = lines.get(i);
-            String[] parts = line.split("\\s+");
-            int u = Integer.parseInt(parts[0]);
-            int v = Integer.parseInt(parts[1]);
-            edges.get(u).add(v);
-            edges.get(v).add(u);
-        }
+        // parse the data in the file, and only search the core which is left after peeling the nodes
+        // we can color at the end, a clique of the whole graph tells how many colors we need at least
+        Graph full = Graph.parse(lines);
+        lowerBound = Math.max(1, full.greedyClique().length);
+        Peeling peeling = new Peeling(full, lowerBound);
+        graph = peeling.core;
+        nodeCount = graph.nodeCount;
+        edgeCount = graph.edgeCount();
 
-        search();
+        searchPortfolio();
+        solution = peeling.extend(solution);
+        minValue = Peeling.colors(solution);
 
         // prepare the solution in the specified output format
         System.out.println(minValue + " 0");
-        for(int i = 0; i < nodeCount; i++) {
+        for(int i = 0; i < solution.length; i++) {
             System.out.print(solution[i] + " ");
         }
         System.out.println("");
@@ -0,0 +1,288 @@
+import java.util.*;
+
+/**
+ * The graph in compressed sparse row form, shared by Solver and AdvancedSolver.
+ * The neighbors of node u are neighbors[offsets[u]], ..., neighbors[offsets[u + 1] - 1],
+ * so reading them is a scan over one int array, without boxing or chasing pointers.
+ */
+class Graph {
+    final int nodeCount;
+    final int[] offsets;
+    final int[] neighbors;
+
+    // bit v of rows[u] is set if u and v are adjacent, only built on demand since it takes nodeCount^2 bits
+    private long[][] rows;
+
+    static final int CLIQUE_STARTS = 64; // how many nodes we try to grow a clique from
+    static final double DENSE_DENSITY = 0.1; // above this share of all possible edges, the solvers use the bit rows
+
+    /**
+     * Build the graph from the edge list, where edge i connects from[i] and to[i].
+     */
+    Graph(int nodeCount, int[] from, int[] to) {
+        this.nodeCount = nodeCount;
+        offsets = new int[nodeCount + 1];
+        neighbors = new int[from.length * 2];
+
+        // count the degrees, then turn them into the start of each row
+        for (int i = 0; i < from.length; i++) {
+            offsets[from[i] + 1]++;
+            offsets[to[i] + 1]++;
+        }
+        for (int u = 0; u < nodeCount; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+        int[] next = Arrays.copyOf(offsets, nodeCount);
+        for (int i = 0; i < from.length; i++) {
+            neighbors[next[from[i]]++] = to[i];
+            neighbors[next[to[i]]++] = from[i];
+        }
+    }
+
+    /**
+     * Read the graph from the lines of an input file: "nodeCount edgeCount" and then one "u v" per edge.
+     */
+    static Graph parse(List<String> lines) {
+        String[] firstLine = lines.get(0).split("\\s+");
+        int nodeCount = Integer.parseInt(firstLine[0]);
+        int edgeCount = Integer.parseInt(firstLine[1]);
+
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        for (int i = 1; i <= edgeCount; i++) {
+            String[] parts = lines.get(i).split("\\s+");
+            from[i - 1] = Integer.parseInt(parts[0]);
+            to[i - 1] = Integer.parseInt(parts[1]);
+        }
+        return new Graph(nodeCount, from, to);
+    }
+
+    /**
+     * Find a large clique greedily. Starting from each of the CLIQUE_STARTS nodes with the largest degree,
+     * we keep the set of nodes adjacent to the whole clique, and add the one with the most neighbors in that set.
+     * The set is a bit row on dense graphs, and a sorted list of nodes otherwise, so the bit rows are only built
+     * when the solvers use them anyway.
+     */
+    int[] greedyClique() {
+        Integer[] order = new Integer[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> degree(b) - degree(a));
+
+        long[][] adjacency = isDense() ? rows() : null;
+        boolean[] candidate = adjacency == null ? new boolean[nodeCount] : null;
+        boolean[] adjacent = adjacency == null ? new boolean[nodeCount] : null;
+        int[] best = new int[0];
+        int[] current = new int[nodeCount];
+        for (int start = 0; start < Math.min(nodeCount, CLIQUE_STARTS); start++) {
+            int v = order[start];
+            if (degree(v) < best.length) { // can not grow a larger clique from here
+                break;
+            }
+            int size = adjacency != null ? growDense(adjacency, v, current) : growSparse(v, current, candidate, adjacent);
+            if (size > best.length) {
+                best = Arrays.copyOf(current, size);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Grow a clique from v into current with the candidates as a bit row.
+     * @return the size of the clique.
+     */
+    private int growDense(long[][] adjacency, int v, int[] current) {
+        int words = (nodeCount >> 6) + 1;
+        long[] candidates = Arrays.copyOf(adjacency[v], words);
+        int size = 0;
+        current[size++] = v;
+        while (true) {
+            int next = -1;
+            int maxCount = -1;
+            for (int w = 0; w < words; w++) {
+                for (long bits = candidates[w]; bits != 0; bits &= bits - 1) {
+                    int u = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    int count = 0;
+                    for (int k = 0; k < words; k++) {
+                        count += Long.bitCount(adjacency[u][k] & candidates[k]);
+                    }
+                    if (count > maxCount) {
+                        maxCount = count;
+                        next = u;
+                    }
+                }
+            }
+            if (next == -1) {
+                return size;
+            }
+            current[size++] = next;
+            for (int k = 0; k < words; k++) {
+                candidates[k] &= adjacency[next][k];
+            }
+        }
+    }
+
+    /**
+     * Same as growDense, with the candidates as a sorted list of nodes, so ties are broken the same way.
+     * candidate and adjacent are all false before and after.
+     */
+    private int growSparse(int v, int[] current, boolean[] candidate, boolean[] adjacent) {
+        int[] candidates = Arrays.copyOfRange(neighbors, offsets[v], offsets[v + 1]);
+        Arrays.sort(candidates);
+        int count = candidates.length;
+        for (int i = 0; i < count; i++) {
+            candidate[candidates[i]] = true;
+        }
+        int size = 0;
+        current[size++] = v;
+        while (count > 0) {
+            int next = -1;
+            int maxCount = -1;
+            for (int i = 0; i < count; i++) {
+                int u = candidates[i];
+                int inside = 0;
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    if (candidate[neighbors[k]]) {
+                        inside++;
+                    }
+                }
+                if (inside > maxCount) {
+                    maxCount = inside;
+                    next = u;
+                }
+            }
+            current[size++] = next;
+
+            // keep the candidates adjacent to next
+            for (int k = offsets[next]; k < offsets[next + 1]; k++) {
+                adjacent[neighbors[k]] = true;
+            }
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int u = candidates[i];
+                if (adjacent[u]) {
+                    candidates[kept++] = u;
+                }
+                else {
+                    candidate[u] = false;
+                }
+            }
+            count = kept;
+            for (int k = offsets[next]; k < offsets[next + 1]; k++) {
+                adjacent[neighbors[k]] = false;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Color the graph with DSATUR: repeatedly take the node with the most different colors among its neighbors,
+     * ties broken by degree, and give it the smallest color none of its neighbors has.
+     * The heap holds (saturation, degree, node) packed in a long and may have stale entries for a node,
+     * only the one with its current saturation is used.
+     */
+    int[] dsatur() {
+        int[] color = new int[nodeCount];
+        Arrays.fill(color, -1);
+        int[] saturation = new int[nodeCount];
+        int words = 1;
+        for (int u = 0; u < nodeCount; u++) {
+            words = Math.max(words, (degree(u) >> 6) + 1);
+        }
+        long[] seen = new long[nodeCount * words]; // bit c of row u is set if a neighbor of u has color c
+
+        long[] heap = new long[nodeCount + neighbors.length + 1];
+        int size = 0;
+        for (int u = 0; u < nodeCount; u++) {
+            size = push(heap, size, key(0, u));
+        }
+        while (size > 0) {
+            long top = heap[0];
+            size = pop(heap, size);
+            int u = (int) (top & NODE_MASK);
+            if (color[u] >= 0 || (int) (top >>> SATURATION_SHIFT) != saturation[u]) {
+                continue;
+            }
+            int c = 0;
+            while (c < (words << 6) && (seen[u * words + (c >> 6)] & (1L << c)) != 0) {
+                c++;
+            }
+            color[u] = c;
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int v = neighbors[k];
+                long bit = 1L << c;
+                if (color[v] < 0 && (seen[v * words + (c >> 6)] & bit) == 0) {
+                    seen[v * words + (c >> 6)] |= bit;
+                    saturation[v]++;
+                    size = push(heap, size, key(saturation[v], v));
+                }
+            }
+        }
+        return color;
+    }
+
+    private static final int SATURATION_SHIFT = 43;
+    private static final int DEGREE_SHIFT = 22;
+    private static final long NODE_MASK = (1L << DEGREE_SHIFT) - 1;
+
+    private long key(int saturation, int u) {
+        return ((long) saturation << SATURATION_SHIFT) | ((long) degree(u) << DEGREE_SHIFT) | u;
+    }
+
+    private static int push(long[] heap, int size, long key) {
+        int i = size++;
+        while (i > 0 && heap[(i - 1) >> 1] < key) {
+            heap[i] = heap[(i - 1) >> 1];
+            i = (i - 1) >> 1;
+        }
+        heap[i] = key;
+        return size;
+    }
+
+    private static int pop(long[] heap, int size) {
+        long last = heap[--size];
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= last) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return size;
+    }
+
+    boolean isDense() {
+        return nodeCount > 1 && neighbors.length >= DENSE_DENSITY * nodeCount * (nodeCount - 1);
+    }
+
+    /**
+     * @return the adjacency as one bit row of (nodeCount >> 6) + 1 words per node, built the first time.
+     */
+    synchronized long[][] rows() {
+        if (rows == null) {
+            rows = new long[nodeCount][(nodeCount >> 6) + 1];
+            for (int u = 0; u < nodeCount; u++) {
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    int v = neighbors[k];
+                    rows[u][v >> 6] |= 1L << v;
+                }
+            }
+        }
+        return rows;
+    }
+
+    int degree(int u) {
+        return offsets[u + 1] - offsets[u];
+    }
+
+    int edgeCount() {
+        return neighbors.length / 2;
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.*;
+
+/**
+ * Remove the nodes which never need to take part in the search for a coloring with at least k colors:
+ * a node with fewer than k neighbors left can always get a color after all of them, and a node u whose neighbors
+ * left are all neighbors of another node v which is not adjacent to u can always take the color of v.
+ * Both rules are applied until neither removes anything, the nodes left form the core graph.
+ */
+class Peeling {
+    final Graph graph;
+    final Graph core;
+    final int[] kept; // kept[i] is the node of graph which is node i of core
+
+    private final int[] removed; // in the order they were removed
+    private final int[] dominator; // dominator[r] is the node removed[r] takes the color of, or -1 if it was peeled
+    private int removedCount;
+
+    private final int[] degree; // number of neighbors not removed yet
+    private final boolean[] alive;
+    private final long[] aliveBits; // the same as alive, one bit per node
+    private final int[] stack;
+    private int stackSize;
+
+    // looking for dominated nodes costs up to sum of degree(v) over the candidates v, stop when this is used up
+    static final int DOMINANCE_WORK = 64;
+
+    Peeling(Graph graph, int k) {
+        this.graph = graph;
+        int n = graph.nodeCount;
+        removed = new int[n];
+        dominator = new int[n];
+        degree = new int[n];
+        alive = new boolean[n];
+        aliveBits = new long[(n >> 6) + 1];
+        stack = new int[n];
+        for (int u = 0; u < n; u++) {
+            degree[u] = graph.degree(u);
+            alive[u] = true;
+            aliveBits[u >> 6] |= 1L << u;
+            if (degree[u] < k) {
+                stack[stackSize++] = u;
+            }
+        }
+
+        long work = (long) DOMINANCE_WORK * graph.neighbors.length;
+        long[][] rows = graph.isDense() ? graph.rows() : null;
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        boolean changed = true;
+        while (changed) {
+            while (stackSize > 0) {
+                int u = stack[--stackSize];
+                if (alive[u]) {
+                    remove(u, -1, k);
+                }
+            }
+            changed = false;
+            for (int u = 0; u < n && work > 0; u++) {
+                if (!alive[u]) {
+                    continue;
+                }
+
+                // mark the neighbors of u, and look for v among the neighbors of its neighbor with the fewest neighbors
+                int w = -1;
+                for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                    int x = graph.neighbors[e];
+                    if (alive[x]) {
+                        mark[x] = u;
+                        if (w == -1 || degree[x] < degree[w]) {
+                            w = x;
+                        }
+                    }
+                }
+                if (w == -1) {
+                    continue;
+                }
+                for (int e = graph.offsets[w]; e < graph.offsets[w + 1]; e++) {
+                    int v = graph.neighbors[e];
+                    if (v == u || !alive[v] || mark[v] == u || degree[v] < degree[u]) {
+                        continue;
+                    }
+                    boolean dominated;
+                    if (rows != null) { // the neighbors of u left, less those of v, is empty
+                        dominated = true;
+                        for (int i = 0; i < aliveBits.length && dominated; i++) {
+                            dominated = (rows[u][i] & aliveBits[i] & ~rows[v][i]) == 0;
+                        }
+                        work -= aliveBits.length;
+                    }
+                    else {
+                        int shared = 0;
+                        for (int f = graph.offsets[v]; f < graph.offsets[v + 1]; f++) {
+                            int x = graph.neighbors[f];
+                            shared += alive[x] && mark[x] == u ? 1 : 0;
+                        }
+                        work -= graph.degree(v);
+                        dominated = shared == degree[u];
+                    }
+                    if (dominated) {
+                        remove(u, v, k);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // the nodes left and the edges between them
+        kept = new int[n - removedCount];
+        int[] index = new int[n];
+        int keptCount = 0;
+        int edges = 0;
+        for (int u = 0; u < n; u++) {
+            if (alive[u]) {
+                index[u] = keptCount;
+                kept[keptCount++] = u;
+                edges += degree[u];
+            }
+        }
+        int[] from = new int[edges / 2];
+        int[] to = new int[edges / 2];
+        int edge = 0;
+        for (int u : kept) {
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int v = graph.neighbors[e];
+                if (alive[v] && u < v) {
+                    from[edge] = index[u];
+                    to[edge++] = index[v];
+                }
+            }
+        }
+        core = new Graph(keptCount, from, to);
+    }
+
+    private void remove(int u, int v, int k) {
+        alive[u] = false;
+        aliveBits[u >> 6] &= ~(1L << u);
+        removed[removedCount] = u;
+        dominator[removedCount++] = v;
+        for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+            int x = graph.neighbors[e];
+            if (alive[x] && degree[x]-- == k) {
+                stack[stackSize++] = x;
+            }
+        }
+    }
+
+    /**
+     * Color the removed nodes in the reverse order of their removal, given the coloring of core.
+     * Each of them only has to avoid the colors of its neighbors which were still there when it was removed,
+     * so the coloring stays feasible and uses no more than max(k, colors of core) colors.
+     */
+    int[] extend(int[] coreColoring) {
+        int[] coloring = new int[graph.nodeCount];
+        Arrays.fill(coloring, -1);
+        for (int i = 0; i < kept.length; i++) {
+            coloring[kept[i]] = coreColoring[i];
+        }
+        int[] used = new int[graph.nodeCount + 1]; // used[c] == r + 1 if a neighbor of removed[r] has color c
+        for (int r = removedCount - 1; r >= 0; r--) {
+            int u = removed[r];
+            if (dominator[r] >= 0) {
+                coloring[u] = coloring[dominator[r]];
+                continue;
+            }
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int c = coloring[graph.neighbors[e]];
+                if (c >= 0) {
+                    used[c] = r + 1;
+                }
+            }
+            int c = 0;
+            while (used[c] == r + 1) {
+                c++;
+            }
+            coloring[u] = c;
+        }
+        return coloring;
+    }
+
+    /**
+     * @return the number of colors of a coloring which uses colors 0, 1, 2, ...
+     */
+    static int colors(int[] coloring) {
+        int max = -1;
+        for (int c : coloring) {
+            max = Math.max(max, c);
+        }
+        return max + 1;
+    }
+}
@@ -3,44 +3,79 @@ import java.util.*;
 import java.lang.Math;
 
 class Node {
-    boolean[] colorSet; // if colorSet[c] == true, then color c is not selectable for this node
+    long[] colorSet; // if bit c of colorSet is set, then color c is not selectable for this node
     int id;
     int color;
     int degree;
     int occupy = 0; // how many color is not selectable for this node
+    long key; // priority in the queue, saturation (occupy) first and then degree
     Node(int size, int id, int degree) {
-        colorSet = new boolean[size];
+        colorSet = new long[(size >> 6) + 1];
         color = -1;
         this.id = id;
         this.degree = degree;
+        updateKey();
+    }
+    void updateKey() {
+        key = ((long) occupy << 32) | degree;
+    }
+    boolean isSelectable(int c) {
+        return (colorSet[c >> 6] & (1L << c)) == 0;
+    }
+    void disable(int c) {
+        colorSet[c >> 6] |= 1L << c;
+    }
+    void enable(int c) {
+        colorSet[c >> 6] &= ~(1L << c);
+    }
+    /**
+     * @return the smallest selectable color >= c, which may be out of range if there is none.
+     */
+    int nextSelectable(int c) {
+        int w = c >> 6;
+        if (w >= colorSet.length) {
+            return c;
+        }
+        long word = ~colorSet[w] & (-1L << c);
+        while (word == 0) {
+            if (++w == colorSet.length) {
+                return w << 6;
+            }
+            word = ~colorSet[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
     }
 }
 
 /**
  * The key idea here is to use a priority queue, where we use a heuristic strategy to determine the next node to color
- * See comp(Node, Node) for details.
+ * See comp(Node, Node) for details: like DSATUR, the node with the most colors ruled out by its neighbors comes first,
+ * and the degree breaks ties. The priority is kept in Node.key so a comparison costs O(1).
  */
 
 class MyPriorityQueue {
     Node[] data;
     int[] indexInData;
+    long[] inQueue; // bit i is set if node i is in the queue, that is, it has no color yet
     int size;
     private static MyPriorityQueue singleton = null;
-    private MyPriorityQueue(ArrayList<ArrayList<Integer>> edges) {
-        size = edges.size();
+    private MyPriorityQueue(Graph graph) {
+        size = graph.nodeCount;
         data = new Node[size];
         indexInData = new int[size];
+        inQueue = new long[(size >> 6) + 1];
         for (int i = 0; i < size; i++) {
-            data[i] = new Node(data.length, i, edges.get(i).size());
+            data[i] = new Node(data.length, i, graph.degree(i));
             indexInData[i] = i;
+            inQueue[i >> 6] |= 1L << i;
         }
         for (int i = data.length / 2 - 1; i >= 0; i--) {
             maxHeapify(i);
         }
     }
-    public static MyPriorityQueue createMyQueue(ArrayList<ArrayList<Integer>> edges) {
+    public static MyPriorityQueue createMyQueue(Graph graph) {
         if (singleton == null) {
-            singleton = new MyPriorityQueue(edges);
+            singleton = new MyPriorityQueue(graph);
         }
         return singleton;
     }
@@ -54,18 +89,7 @@ class MyPriorityQueue {
         return 2 * i + 2;
     }
     private static int comp(Node n1, Node n2) {
-        if (n1.degree != n2.degree) {
-            return n1.degree - n2.degree;
-        }
-        if (n1.occupy != n2.occupy) {
-            return n1.occupy - n2.occupy;
-        }
-        for (int i = 0; i < n1.colorSet.length; i++) {
-            if (n1.colorSet[i] != n2.colorSet[i]) {
-                return n1.colorSet[i] ? 1 : -1;
-            }
-        }
-        return 0;
+        return Long.compare(n1.key, n2.key);
     }
     private void maxHeapify(int i) {
         int l = left(i);
@@ -94,6 +118,7 @@ class MyPriorityQueue {
             System.out.println("heap underflow");
         }
         Node max = data[0];
+        inQueue[max.id >> 6] &= ~(1L << max.id);
         indexInData[data[size - 1].id] = 0;
         indexInData[data[0].id] = -1;
         data[0] = data[size - 1];
@@ -102,10 +127,28 @@ class MyPriorityQueue {
         maxHeapify(0);
         return max;
     }
+    /**
+     * Remove a node that is still in the queue.
+     */
+    Node remove(int nodeID) {
+        // bubble the node up to the top regardless of its priority, then extract it
+        int i = indexInData[nodeID];
+        while (i > 0) {
+            int p = parent(i);
+            indexInData[data[i].id] = p;
+            indexInData[data[p].id] = i;
+            Node temp = data[i];
+            data[i] = data[p];
+            data[p] = temp;
+            i = p;
+        }
+        return extractMax();
+    }
     void disableColor(int nodeID, int c) {
         int i = indexInData[nodeID];
-        data[i].colorSet[c] = true;
+        data[i].disable(c);
         data[i].occupy++;
+        data[i].updateKey();
         while (i > 0 && comp(data[parent(i)], data[i]) < 0) {
             int p = parent(i);
             indexInData[data[i].id] = p;
@@ -118,11 +161,13 @@ class MyPriorityQueue {
     }
     void enableColor(int nodeID, int c) {
         int i = indexInData[nodeID];
-        data[i].colorSet[c] = false;
+        data[i].enable(c);
         data[i].occupy--;
+        data[i].updateKey();
         maxHeapify(i);
     }
     void insert(Node node) {
+        inQueue[node.id >> 6] |= 1L << node.id;
         data[size] = node;
         indexInData[node.id] = size;
         int i = size;
@@ -148,7 +193,15 @@ public class Solver {
     static MyPriorityQueue queue;
     static Stack<Node> stack;
 
-    static ArrayList<ArrayList<Integer>> edges;
+    static Graph graph;
+
+    // a large clique, its size is a lower bound of the number of colors
+    static int[] clique;
+
+    // for a dense graph, the bit rows of Graph, and bit v of blocked[c] is set if color c is ruled out for node v,
+    // the same as bit c of its Node.colorSet as long as v has no color; both are null for a sparse graph
+    static long[][] rows;
+    static long[][] blocked;
 
     public static void main(String[] args) {
         try {
@@ -158,9 +211,44 @@ public class Solver {
         }
     }
 
+    /**
+     * Rule out color c for the neighbors of node u which have no color yet and could still use c.
+     * For a dense graph, they are found with a few word operations on the bit rows instead of a scan of the neighbors.
+     * @return the neighbors for which c was ruled out, so it can be restored when back tracking.
+     */
+    static ArrayList<Integer> propagate(int u, int c) {
+        ArrayList<Integer> changed = new ArrayList<>();
+        if (rows == null) {
+            for (int k = graph.offsets[u]; k < graph.offsets[u + 1]; k++) {
+                int neighbor = graph.neighbors[k];
+                int indexNeighbor = queue.indexInData[neighbor];
+                if (indexNeighbor != -1 && queue.data[indexNeighbor].isSelectable(c)) {
+                    queue.disableColor(neighbor, c);
+                    changed.add(neighbor);
+                }
+            }
+            return changed;
+        }
+
+        long[] row = rows[u];
+        long[] ruledOut = blocked[c];
+        for (int w = 0; w < row.length; w++) {
+            long bits = row[w] & queue.inQueue[w] & ~ruledOut[w];
+            ruledOut[w] |= bits;
+            for (; bits != 0; bits &= bits - 1) {
+                int neighbor = (w << 6) + Long.numberOfTrailingZeros(bits);
+                queue.disableColor(neighbor, c);
+                changed.add(neighbor);
+            }
+        }
+        return changed;
+    }
+
     /**
      * This method needs to search for a large space, which makes it impractical to be used.
      * We may need a smarter bounding to prune the search tree.
+     * The nodes of clique are colored 0, 1, 2, ... at the root, since any coloring can be renamed to do so,
+     * and the search stops as soon as it uses as many colors as the size of the clique, which is optimal.
      */
     public static void solveNaive() {
         int state = 0; // 0 means we are searching down, 1 means we are back tracking
@@ -168,13 +256,24 @@ public class Solver {
         Stack<ArrayList<Integer>> changedStack = new Stack<>();
         bounding.push(-1);
 
+        // Pre-color the clique, these nodes are never back tracked
+        for (int c = 0; c < clique.length; c++) {
+            Node node = queue.remove(clique[c]);
+            node.disable(c);
+            node.color = c;
+            ArrayList<Integer> changed = propagate(node.id, c);
+            bounding.push(c);
+            changedStack.push(changed);
+            stack.push(node);
+        }
+
         /*
         We have no patience for this to run forever, so we set this limitation.
         The initial value of limit is 0, so we can at leas get one non-trivial solution.
          */
         int limit = 0;
         int ct = 0;
-        for (int i = 0; i >= 0; ) { // the i-th node we are going to color
+        for (int i = clique.length; i >= clique.length; ) { // the i-th node we are going to color
             ct++;
             if (limit > 0 && ct > limit) {
                 return;
@@ -187,38 +286,31 @@ public class Solver {
                     }
                     limit = Math.max(8 * ct, 100000);
                     ct = 0;
+                    if (minValue == clique.length) { // as good as the lower bound, so it is optimal
+                        return;
+                    }
                 }
                 i--;
                 state = 1;
             }
             else if (state == 0) {
                 Node node = queue.extractMax();
-                int j;
-                for (j = 0; j <= i; j++) {
-                    if (!node.colorSet[j]) {
-                        if (j + 1 >= minValue) { // no need to search this branch
-                            j = i + 1;
-                            break;
-                        }
-                        node.colorSet[j] = true;
+                int j = node.nextSelectable(0);
+                if (j <= i) {
+                    if (j + 1 >= minValue) { // no need to search this branch
+                        j = i + 1;
+                    }
+                    else {
+                        node.disable(j);
                         node.color = j;
-                        ArrayList<Integer> changed = new ArrayList<>();
                         // Propagate the constraints to neighbors, and record this change in stack
-                        for (int k = 0; k < edges.get(node.id).size(); k++) {
-                            int neighbor = edges.get(node.id).get(k);
-                            int indexNeighbor = queue.indexInData[neighbor];
-                            if (indexNeighbor != -1 && !queue.data[indexNeighbor].colorSet[j]) {
-                                queue.disableColor(neighbor, j);
-                                changed.add(neighbor);
-                            }
-                        }
+                        ArrayList<Integer> changed = propagate(node.id, j);
                         bounding.push(Math.max(bounding.peek(), j));
                         changedStack.push(changed);
                         stack.push(node);
-                        break;
                     }
                 }
-                if (j == i + 1) { // back tracking
+                if (j > i) { // back tracking
                     state = 1;
                     i--;
                     queue.insert(node);
@@ -235,34 +327,29 @@ public class Solver {
                 for (int restoreID : restore) {
                     queue.enableColor(restoreID, node.color);
                 }
-                node.colorSet[node.color] = false;
-                int j = node.color + 1;
+                if (blocked != null) {
+                    for (int restoreID : restore) {
+                        blocked[node.color][restoreID >> 6] &= ~(1L << restoreID);
+                    }
+                }
+                node.enable(node.color);
+                int j = node.nextSelectable(node.color + 1);
                 node.color = -1;
-                for (; j <= i; j++) {
-                    if (!node.colorSet[j]) {
-                        if (j + 1 >= minValue) { // no need to search this branch
-                            j = i + 1;
-                            break;
-                        }
-                        node.colorSet[j] = true;
+                if (j <= i) {
+                    if (j + 1 >= minValue) { // no need to search this branch
+                        j = i + 1;
+                    }
+                    else {
+                        node.disable(j);
                         node.color = j;
-                        ArrayList<Integer> changed = new ArrayList<>();
                         // Propagate the constraints to neighbors, and record this change in stack
-                        for (int k = 0; k < edges.get(node.id).size(); k++) {
-                            int neighbor = edges.get(node.id).get(k);
-                            int indexNeighbor = queue.indexInData[neighbor];
-                            if (indexNeighbor != -1 && !queue.data[indexNeighbor].colorSet[j]) {
-                                queue.disableColor(neighbor, j);
-                                changed.add(neighbor);
-                            }
-                        }
+                        ArrayList<Integer> changed = propagate(node.id, j);
                         bounding.push(Math.max(bounding.peek(), j));
                         changedStack.push(changed);
                         stack.push(node);
-                        break;
                     }
                 }
-                if (j == i + 1) { // back tracking
+                if (j > i) { // back tracking
                     i--;
                     queue.insert(node);
                 }
@@ -303,35 +390,33 @@ public class Solver {
             input.close();
         }
         
-        // parse the data in the file
-        String[] firstLine = lines.get(0).split("\\s+");
-        nodeCount = Integer.parseInt(firstLine[0]);
-        edgeCount = Integer.parseInt(firstLine[1]);
+        // parse the data in the file, and only search the core which is left after peeling the nodes
+        // we can color at the end, a clique of the whole graph tells how many colors we need at least
+        Graph full = Graph.parse(lines);
+        Peeling peeling = new Peeling(full, full.greedyClique().length);
+        graph = peeling.core;
+        nodeCount = graph.nodeCount;
+        edgeCount = graph.edgeCount();
 
-        edges = new ArrayList<>();
-        for (int i = 0; i < nodeCount; i++) {
-            edges.add(new ArrayList<>());
-        }
-
-        for (int i = 1; i <= edgeCount; i++) {
-            String line = lines.get(i);
-            String[] parts = line.split("\\s+");
-
-            int u = Integer.parseInt(parts[0]);
-            int v = Integer.parseInt(parts[1]);
-            edges.get(u).add(v);
-            edges.get(v).add(u);
-        }
-        queue = MyPriorityQueue.createMyQueue(edges);
+        queue = MyPriorityQueue.createMyQueue(graph);
         stack = new Stack<>();
         minValue = nodeCount;
         solution = new int[nodeCount];
 
-        solveNaive();
+        clique = graph.greedyClique();
+        if (graph.isDense()) {
+            rows = graph.rows();
+            blocked = new long[nodeCount][(nodeCount >> 6) + 1];
+        }
+        if (nodeCount > 0) {
+            solveNaive();
+        }
+        solution = peeling.extend(solution);
+        minValue = Peeling.colors(solution);
 
         // prepare the solution in the specified output format
         System.out.println(minValue + " 0");
-        for(int i = 0; i < nodeCount; i++) {
+        for(int i = 0; i < solution.length; i++) {
             System.out.print(solution[i] + " ");
         }
         System.out.println("");
@@ -1,7 +1,251 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 import java.lang.Math;
 
+/**
+ * The best selection found so far, shared by all the workers of the parallel search.
+ * It is immutable, so a worker can publish a better one with a single compare-and-set.
+ */
+class Incumbent {
+    final int value;
+    final int[] taken;
+
+    Incumbent(int value, int[] taken) {
+        this.value = value;
+        this.taken = taken;
+    }
+}
+
+/**
+ * A subtree of the include/exclude search tree, rooted at item depth.
+ * Above splitDepth a task forks its two children so that idle workers can steal them,
+ * below splitDepth it searches its whole subtree on the current thread like Solver.helper().
+ */
+class SubtreeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int depth;
+    private final int value;
+    private final int room;
+    private final float bounding;
+    private final int[] curTaken; // decisions of items [0, depth), the rest is scratch space
+    private final int splitDepth;
+
+    SubtreeTask(int depth, int value, int room, float bounding, int[] curTaken, int splitDepth) {
+        this.depth = depth;
+        this.value = value;
+        this.room = room;
+        this.bounding = bounding;
+        this.curTaken = curTaken;
+        this.splitDepth = splitDepth;
+    }
+
+    @Override
+    protected void compute() {
+        if (room < 0 || bounding <= Solver.incumbent.get().value) {
+            return;
+        }
+        if (depth == Solver.items) {
+            offer(value, curTaken);
+            return;
+        }
+        if (depth < splitDepth) {
+            int[] left = curTaken.clone();
+            left[depth] = 1;
+            int[] right = curTaken.clone();
+            right[depth] = 0;
+            float rightBounding = value + Solver.suffixBounding(depth + 1, room);
+            invokeAll(new SubtreeTask(depth + 1, value + Solver.values[depth], room - Solver.weights[depth],
+                            bounding, left, splitDepth),
+                    new SubtreeTask(depth + 1, value, room, rightBounding, right, splitDepth));
+        }
+        else {
+            search();
+        }
+    }
+
+    /**
+     * Publish a candidate if it beats the incumbent, retrying when another worker got there first.
+     */
+    private static void offer(int value, int[] taken) {
+        Incumbent current = Solver.incumbent.get();
+        while (current.value < value) {
+            if (Solver.incumbent.compareAndSet(current, new Incumbent(value, taken.clone()))) {
+                return;
+            }
+            current = Solver.incumbent.get();
+        }
+    }
+
+    /**
+     * Same as Solver.helper(), but restricted to the subtree of this task. The stacks are indexed by item,
+     * since each item pushes at most one entry, and the pruning uses the value shared by all workers.
+     */
+    private void search() {
+        final int items = Solver.items;
+        final int[] values = Solver.values;
+        final int[] weights = Solver.weights;
+        int[] branch = new int[items];
+        float[] savedBounding = new float[items];
+
+        int value = this.value;
+        int room = this.room;
+        float bounding = this.bounding;
+        int state = 0; // 0 means we are going down, 1 means going up
+
+        for (int i = depth; i >= depth; ) {
+            if (state == 0 && (room < 0 || bounding <= Solver.incumbent.get().value)) {
+                i--;
+                state = 1;
+            }
+            else if (i == items) {
+                offer(value, curTaken);
+                i--;
+                state = 1;
+            }
+            else if (state == 0) {
+                branch[i] = 0;
+                curTaken[i] = 1;
+                value += values[i];
+                room -= weights[i];
+                i++;
+            }
+            else {
+                if (branch[i] == 0) {
+                    curTaken[i] = 0;
+                    value -= values[i];
+                    room += weights[i];
+                    savedBounding[i] = bounding;
+                    branch[i] = 1;
+                    bounding = value + Solver.suffixBounding(i + 1, room);
+                    state = 0;
+                    i++;
+                }
+                else {
+                    bounding = savedBounding[i];
+                    i--;
+                }
+            }
+        }
+    }
+}
+
+/**
+ * Keeps a knapsack between solves, for when the same instance is solved again and again with the capacity nudged
+ * or a few items added or removed. The items are kept in the order of Solver.compareRatio, so they are never sorted
+ * again, and the last solution is repaired into a feasible one and used as the incumbent of the next search.
+ * It works on the static fields of Solver, so only one session can solve at a time.
+ */
+class KnapsackSession {
+    private int size = 0;
+    private int capacity;
+    private int[] values = new int[16]; // sorted by Solver.compareRatio
+    private int[] weights = new int[16];
+    private int[] ids = new int[16];
+    private int[] taken = new int[16]; // the last solution
+    private int nextId = 0;
+    private int value = 0;
+
+    KnapsackSession(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the id of the new item, which is used to remove it or to read whether it is taken.
+     */
+    int addItem(int value, int weight) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            weights = Arrays.copyOf(weights, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+            taken = Arrays.copyOf(taken, size * 2);
+        }
+        int i = size;
+        while (i > 0 && Solver.compareRatio(values[i - 1], weights[i - 1], value, weight) > 0) {
+            values[i] = values[i - 1];
+            weights[i] = weights[i - 1];
+            ids[i] = ids[i - 1];
+            taken[i] = taken[i - 1];
+            i--;
+        }
+        values[i] = value;
+        weights[i] = weight;
+        ids[i] = nextId;
+        taken[i] = 0;
+        size++;
+        return nextId++;
+    }
+
+    void removeItem(int id) {
+        int i = indexOf(id);
+        System.arraycopy(values, i + 1, values, i, size - i - 1);
+        System.arraycopy(weights, i + 1, weights, i, size - i - 1);
+        System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+        System.arraycopy(taken, i + 1, taken, i, size - i - 1);
+        size--;
+    }
+
+    boolean isTaken(int id) {
+        return taken[indexOf(id)] == 1;
+    }
+
+    int getValue() {
+        return value;
+    }
+
+    /**
+     * Solve the current instance, starting from the last solution.
+     * @return the optimal value.
+     */
+    int solve() {
+        // repair the last solution: drop the worst items while it is too heavy, then fill the room greedily
+        int[] seed = Arrays.copyOf(taken, size);
+        long weight = 0;
+        for (int i = 0; i < size; i++) {
+            weight += seed[i] * (long) weights[i];
+        }
+        for (int i = size - 1; i >= 0 && weight > capacity; i--) {
+            if (seed[i] == 1) {
+                seed[i] = 0;
+                weight -= weights[i];
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (seed[i] == 0 && weight + weights[i] <= capacity) {
+                seed[i] = 1;
+                weight += weights[i];
+            }
+        }
+
+        Solver.items = size;
+        Solver.capacity = capacity;
+        Solver.values = Arrays.copyOf(values, size);
+        Solver.weights = Arrays.copyOf(weights, size);
+        Solver.maxValue = 0;
+        Solver.solveSorted(seed);
+
+        System.arraycopy(Solver.maxTaken, 0, taken, 0, size);
+        value = Solver.maxValue;
+        return value;
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("no item with id " + id);
+    }
+}
+
 public class Solver {
     static int items;
     static int capacity;
@@ -9,12 +253,38 @@ public class Solver {
     static int[] weights;
 
     static int[] taken;
+
+    // prefixValues[i] and prefixWeights[i] are the sums over items [0, i) in the sorted order
+    static long[] prefixValues;
+    static long[] prefixWeights;
     static int[] curTaken;
     static int[] maxTaken;
 
     static int maxValue = 0;
-    static Stack<Float> boundingStack = new Stack<>();
-    static Stack<Integer> branchStack = new Stack<>();
+
+    // the largest number of cells we are willing to fill with dynamic programming
+    static final long DP_LIMIT = 2000000000L;
+    // the search state of helper() indexed by depth, each item pushes at most one entry
+    static float[] boundingStack;
+    static int[] branchStack;
+
+    // number of workers for the branch and bound, 1 means the serial helper()
+    static int threads = 1;
+    static AtomicReference<Incumbent> incumbent;
+
+    // print statistics of the search to the standard error
+    static boolean verbose = false;
+    static long nodes = 0; // number of nodes visited by helper()
+    static long nodeLimit = Long.MAX_VALUE; // helper() gives up after visiting this many nodes
+    static boolean aborted = false; // whether helper() gave up
+
+    // use bestFirstHelper() instead of helper(), with at most openNodes open nodes
+    static boolean bestFirst = false;
+    static int openNodes = 1 << 16;
+    static final long REPORT_INTERVAL = 1000000; // print the gap every this many nodes
+
+    // the cost of visiting a node in helper(), in cells of the DP
+    static final long NODE_COST = 8;
 
     public static void main(String[] args) {
         try {
@@ -60,6 +330,221 @@ public class Solver {
         maxValue = dp[items - 1][capacity];
     }
 
+    /**
+     * Dynamic Programming which keeps only one row of values, so the memory grows with O(capacity) for the values.
+     * The decisions are still needed to recover taken[], so we choose one of the two ways below:
+     * if a bit per (item, capacity) fits in the memory, we record the decisions in bit-packed rows,
+     * otherwise we use divide-and-conquer traceback, which only keeps 2 rows at any time.
+     */
+    public static void solveDPCompact() {
+        int words = (capacity >> 6) + 1;
+        long bytes = (long) items * words * 8;
+        if (bytes <= Runtime.getRuntime().maxMemory() / 2) {
+            solveDPBits(words);
+        }
+        else {
+            solveDPSplit();
+        }
+    }
+
+    /**
+     * Dynamic Programming with bit-packed decision rows, which takes O(items * capacity / 64) memory.
+     * The j-th bit of decision[i] is set if item i is taken in the best selection of items [0, i] with room j.
+     */
+    public static void solveDPBits(int words) {
+        int[] dp = new int[capacity + 1];
+        long[][] decision = new long[items][words];
+
+        for (int i = 0; i < items; i++) {
+            long[] row = decision[i];
+            // go backwards so that dp[j - weights[i]] still holds the value of the previous row
+            for (int j = capacity; j >= weights[i]; j--) {
+                int v = dp[j - weights[i]] + values[i];
+                if (v > dp[j]) {
+                    dp[j] = v;
+                    row[j >> 6] |= 1L << j;
+                }
+            }
+        }
+
+        for (int i = items - 1, k = capacity; i >= 0; i--) {
+            if ((decision[i][k >> 6] & (1L << k)) != 0) {
+                taken[i] = 1;
+                k -= weights[i];
+            }
+            else {
+                taken[i] = 0;
+            }
+        }
+
+        maxValue = dp[capacity];
+    }
+
+    /**
+     * Dynamic Programming with divide-and-conquer traceback, which only keeps 2 rows of size capacity + 1.
+     * For items [lo, hi) and room c, we compute the best values of the first half forwards and the second half
+     * separately, find the split of the room k that maximizes first[k] + second[c - k], and recurse on both halves.
+     * This costs about twice the time of the plain DP.
+     */
+    public static void solveDPSplit() {
+        int[] first = new int[capacity + 1];
+        int[] second = new int[capacity + 1];
+        Arrays.fill(taken, 0);
+        maxValue = 0;
+        splitHelper(0, items, capacity, first, second);
+        for (int i = 0; i < items; i++) {
+            maxValue += taken[i] * values[i];
+        }
+    }
+
+    /**
+     * Decide taken[] for items [lo, hi) using room c. Both rows are only used before the recursion,
+     * so the two halves can reuse them.
+     */
+    private static void splitHelper(int lo, int hi, int c, int[] first, int[] second) {
+        if (hi == lo) { // no items at all
+            return;
+        }
+        if (hi - lo == 1) {
+            taken[lo] = weights[lo] <= c ? 1 : 0;
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        fillRow(lo, mid, c, first);
+        fillRow(mid, hi, c, second);
+
+        int best = -1;
+        int split = 0;
+        for (int k = 0; k <= c; k++) {
+            int v = first[k] + second[c - k];
+            if (v > best) {
+                best = v;
+                split = k;
+            }
+        }
+
+        splitHelper(lo, mid, split, first, second);
+        splitHelper(mid, hi, c - split, first, second);
+    }
+
+    /**
+     * row[j] = the maximum value we can get using items [lo, hi) and room j, for j in [0, c]
+     */
+    private static void fillRow(int lo, int hi, int c, int[] row) {
+        Arrays.fill(row, 0, c + 1, 0);
+        for (int i = lo; i < hi; i++) {
+            for (int j = c; j >= weights[i]; j--) {
+                int v = row[j - weights[i]] + values[i];
+                if (v > row[j]) {
+                    row[j] = v;
+                }
+            }
+        }
+    }
+
+    /**
+     * Dynamic Programming over the values instead of the capacity, which is cheap when the sum of values is small.
+     * dp[v] = the minimum weight needed to get a value of exactly v, and the answer is the largest v with
+     * dp[v] <= capacity. The decisions are recorded in bit-packed rows like solveDPBits().
+     */
+    public static void solveDPValue() {
+        int sumValues = (int) totalValue();
+        int[] dp = new int[sumValues + 1];
+        long[][] decision = new long[items][(sumValues >> 6) + 1];
+        Arrays.fill(dp, Integer.MAX_VALUE); // MAX_VALUE means this value is not reachable
+        dp[0] = 0;
+
+        int reachable = 0; // the sum of values of the items considered so far
+        for (int i = 0; i < items; i++) {
+            long[] row = decision[i];
+            reachable += values[i];
+            for (int v = reachable; v >= values[i]; v--) {
+                long w = (long) dp[v - values[i]] + weights[i];
+                if (w < dp[v] && w <= capacity) {
+                    dp[v] = (int) w;
+                    row[v >> 6] |= 1L << v;
+                }
+            }
+        }
+
+        int best = sumValues;
+        while (dp[best] > capacity) {
+            best--;
+        }
+
+        for (int i = items - 1, v = best; i >= 0; i--) {
+            if ((decision[i][v >> 6] & (1L << v)) != 0) {
+                taken[i] = 1;
+                v -= values[i];
+            }
+            else {
+                taken[i] = 0;
+            }
+        }
+
+        maxValue = best;
+    }
+
+    private static long totalValue() {
+        long sum = 0;
+        for (int i = 0; i < items; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Pick the cheapest exact engine for the instance.
+     * The cost of the dynamic programming is the number of cells it fills: items * (capacity + 1) for solveDPCompact()
+     * (twice that if the decisions do not fit in memory as bits), and items * (sum of values + 1) for solveDPValue()
+     * (only if its decisions fit in memory). The cost of the branch and bound can not be known in advance,
+     * so we give it a budget of nodes that is cheap compared to the cheapest DP, and only run the DP if it fails.
+     */
+    public static void solveAuto() {
+        long memory = Runtime.getRuntime().maxMemory() / 2;
+
+        long capacityCost = (long) items * (capacity + 1);
+        if ((long) items * ((capacity >> 6) + 1) * 8 > memory) {
+            capacityCost *= 2; // solveDPSplit()
+        }
+        long sumValues = totalValue();
+        long valueCost = Long.MAX_VALUE;
+        if (sumValues < Integer.MAX_VALUE && (long) items * ((sumValues >> 6) + 1) * 8 <= memory) {
+            valueCost = (long) items * (sumValues + 1);
+        }
+        long dpCost = Math.min(capacityCost, valueCost);
+        if (verbose) {
+            System.err.printf("cost: capacity DP %d, value DP %s%n", capacityCost,
+                    valueCost == Long.MAX_VALUE ? "out of memory" : String.valueOf(valueCost));
+        }
+
+        if (dpCost > DP_LIMIT) { // the search is the only option
+            solveLarge();
+            return;
+        }
+
+        // try the search first, one node costs about as much as a few cells of the DP
+        int savedThreads = threads;
+        threads = 1;
+        nodeLimit = dpCost / NODE_COST;
+        solveLarge();
+        threads = savedThreads;
+        nodeLimit = Long.MAX_VALUE;
+        if (!aborted) {
+            return;
+        }
+
+        if (verbose) {
+            System.err.println("search gave up, use " + (valueCost < capacityCost ? "value" : "capacity") + " DP");
+        }
+        if (valueCost < capacityCost) {
+            solveDPValue();
+        }
+        else {
+            solveDPCompact();
+        }
+    }
+
     /**
      *  Solve the problem with large input size
      */
@@ -74,8 +559,7 @@ public class Solver {
         Arrays.sort(temp, new Comparator<int[]>() {
             @Override
             public int compare(int[] o1, int[] o2) {
-                float t = (float)o2[0] / (float)o2[1] - (float)o1[0] / (float)o1[1];
-                return t == 0 ? 0 : (t > 0 ? 1 : -1);
+                return compareRatio(o1[0], o1[1], o2[0], o2[1]);
             }
         });
         for (int i = 0; i < items; i++) {
@@ -83,39 +567,227 @@ public class Solver {
             weights[i] = temp[i][1];
         }
 
+        solveSorted(null);
+
+        // restore the original order of items
+        for (int i = 0; i < items; i++) {
+            taken[temp[i][2]] = maxTaken[i];
+            values[temp[i][2]] = temp[i][0];
+            weights[temp[i][2]] = temp[i][1];
+        }
+    }
+
+    /**
+     * The order of items used by the search: descending order of value per weight.
+     */
+    public static int compareRatio(int value1, int weight1, int value2, int weight2) {
+        float t = (float)value2 / (float)weight2 - (float)value1 / (float)weight1;
+        return t == 0 ? 0 : (t > 0 ? 1 : -1);
+    }
+
+    /**
+     * Solve the problem whose items are already sorted by compareRatio, and leave the solution in maxValue and
+     * maxTaken in the sorted order.
+     * @param seed: a feasible selection in the sorted order to start from, or null. The search only looks for
+     *            something better than it, which makes a re-solve from a good seed much cheaper.
+     */
+    public static void solveSorted(int[] seed) {
+        computePrefixSums();
+        int[] fixed = reduce(seed);
+
+        // Only search the core, which is the items not fixed by the reduction
+        int sortedItems = items;
+        int[] sortedValues = values;
+        int[] sortedWeights = weights;
+        int fullCapacity = capacity;
+        int[] core = new int[sortedItems];
+        int coreSize = 0;
+        int fixedValue = 0;
+        int fixedWeight = 0;
+        for (int i = 0; i < sortedItems; i++) {
+            if (fixed[i] == -1) {
+                core[coreSize++] = i;
+            }
+            else if (fixed[i] == 1) {
+                fixedValue += sortedValues[i];
+                fixedWeight += sortedWeights[i];
+            }
+        }
+        int bestValue = maxValue;
+        int[] bestTaken = maxTaken;
+
+        items = coreSize;
+        values = new int[coreSize];
+        weights = new int[coreSize];
+        for (int i = 0; i < coreSize; i++) {
+            values[i] = sortedValues[core[i]];
+            weights[i] = sortedWeights[core[i]];
+        }
+        capacity = fullCapacity - fixedWeight;
+        maxValue = bestValue - fixedValue; // the core only needs to beat the greedy (or seed) solution
+
+        computePrefixSums();
         curTaken = new int[items];
         maxTaken = new int[items];
+        boundingStack = new float[items];
+        branchStack = new int[items];
 
-        helper();
+        long startTime = System.nanoTime();
+        if (threads > 1) {
+            parallelHelper();
+        }
+        else if (bestFirst) {
+            bestFirstHelper();
+        }
+        else {
+            helper();
+        }
+        if (verbose && threads == 1) {
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            System.err.printf("nodes: %d, %.3f s, %.0f nodes/s%n", nodes, seconds, nodes / seconds);
+        }
 
         // these 2 lines use recursive version of searching
 //        float bounding = suffixBounding(0, capacity);
 //        helper(0, 0, capacity, bounding);
 
-        for (int i = 0; i < items; i++) {
-            taken[temp[i][2]] = maxTaken[i];
+        if (maxValue > bestValue - fixedValue) { // the search found something better than the incumbent
+            bestValue = maxValue + fixedValue;
+            bestTaken = new int[sortedItems];
+            for (int i = 0; i < sortedItems; i++) {
+                bestTaken[i] = fixed[i] == 1 ? 1 : 0;
+            }
+            for (int i = 0; i < coreSize; i++) {
+                bestTaken[core[i]] = maxTaken[i];
+            }
+        }
+
+        items = sortedItems;
+        values = sortedValues;
+        weights = sortedWeights;
+        capacity = fullCapacity;
+        maxValue = bestValue;
+        maxTaken = bestTaken;
+        computePrefixSums();
+    }
+
+    /**
+     * Reduction of the sorted problem before the search.
+     * The LP (Dantzig) solution takes the items before the critical item b, and a fraction of b.
+     * With lambda = values[b] / weights[b], the reduced cost of item j is values[j] - lambda * weights[j],
+     * and any selection that disagrees with the LP on item j has a value at most U - |reduced cost of j|,
+     * where U is the LP bound. If that can not beat the incumbent, item j is fixed to its LP value.
+     * It also sets maxValue and maxTaken to the incumbent, which is the better one of the greedy solution and seed.
+     * @param seed: a feasible selection in the sorted order, or null.
+     * @return fixed[j] = 0 or 1 if item j is fixed to that value, -1 if it is free.
+     */
+    public static int[] reduce(int[] seed) {
+        int[] fixed = new int[items];
+        maxTaken = new int[items];
+
+        // find the critical item
+        int b = 0;
+        while (b < items && prefixWeights[b + 1] <= capacity) {
+            b++;
+        }
+        if (b == items) { // everything fits
+            Arrays.fill(fixed, 1);
+            Arrays.fill(maxTaken, 1);
+            maxValue = (int) prefixValues[items];
+            return fixed;
+        }
+
+        // greedy solution: the items before b, and then whatever still fits
+        int room = capacity;
+        int greedy = 0;
+        for (int j = 0; j < items; j++) {
+            if (j != b && weights[j] <= room) {
+                maxTaken[j] = 1;
+                room -= weights[j];
+                greedy += values[j];
+            }
+        }
+        maxValue = greedy;
+        if (seed != null) {
+            int seedValue = 0;
+            for (int j = 0; j < items; j++) {
+                seedValue += seed[j] * values[j];
+            }
+            if (seedValue > maxValue) {
+                maxValue = seedValue;
+                maxTaken = seed.clone();
+            }
+        }
+
+        double lambda = values[b] / (double) weights[b];
+        double upper = prefixValues[b] + (capacity - prefixWeights[b]) * lambda;
+        int fixedOne = 0;
+        int fixedZero = 0;
+        for (int j = 0; j < items; j++) {
+            fixed[j] = -1;
+            // the values are integers, so a bound below maxValue + 1 can not beat the incumbent
+            if (j != b && upper - Math.abs(values[j] - lambda * weights[j]) < maxValue + 0.5) {
+                fixed[j] = j < b ? 1 : 0;
+                if (j < b) {
+                    fixedOne++;
+                }
+                else {
+                    fixedZero++;
+                }
+            }
+        }
+
+        if (verbose) {
+            System.err.printf("reduction: fixed %d of %d items (%d to 1, %d to 0), core size %d%n",
+                    fixedOne + fixedZero, items, fixedOne, fixedZero, items - fixedOne - fixedZero);
         }
+        return fixed;
     }
 
     /**
-     * Compute the maximum value that we can get using room space, and only items with index >= i
+     * Compute the maximum value that we can get using room space, and only items with index >= i.
+     * Since the items are sorted by value per weight, the greedy takes items i, i + 1, ... until the critical item
+     * which does not fit, and takes a fraction of it. We search for the critical item on the prefix sums,
+     * so each bounding costs O(log d) instead of O(d), where d is the distance from i to the critical item.
      */
     public static float suffixBounding(int i, int room) {
-        float bounding = 0;
-        while (i < items) {
-            if (weights[i] <= room) {
-                room -= weights[i];
-                bounding += values[i];
+        long limit = prefixWeights[i] + room;
+        // the critical item is usually close to i, so gallop forwards before the binary search
+        int lo = i;
+        int step = 1;
+        while (lo + step < items && prefixWeights[lo + step + 1] <= limit) {
+            lo += step;
+            step <<= 1;
+        }
+        int hi = Math.min(lo + step, items);
+        while (lo < hi) { // find the first k >= i such that items [i, k] do not fit
+            int mid = (lo + hi) >>> 1;
+            if (prefixWeights[mid + 1] > limit) {
+                hi = mid;
             }
             else {
-                bounding += room / (float)weights[i] * (float)values[i];
-                break;
+                lo = mid + 1;
             }
-            i++;
+        }
+        float bounding = prefixValues[lo] - prefixValues[i];
+        if (lo < items) {
+            bounding += (limit - prefixWeights[lo]) / (float)weights[lo] * (float)values[lo];
         }
         return bounding;
     }
 
+    /**
+     * Compute prefixValues and prefixWeights for the current order of items.
+     */
+    public static void computePrefixSums() {
+        prefixValues = new long[items + 1];
+        prefixWeights = new long[items + 1];
+        for (int i = 0; i < items; i++) {
+            prefixValues[i + 1] = prefixValues[i] + values[i];
+            prefixWeights[i + 1] = prefixWeights[i] + weights[i];
+        }
+    }
+
     /**
      * Iterative version of the helper method, which better saves space.
      * This method does an exhaustive search and uses relaxation on the bounding.
@@ -123,12 +795,24 @@ public class Solver {
      * We prune the search tree when current bounding <= max value we already got.
      */
     public static void helper() {
-        int value = 0;
-        int room = capacity;
-        float bounding = suffixBounding(0, capacity);
+        nodes = 0;
+        aborted = false;
+        dive(0, 0, capacity, suffixBounding(0, capacity));
+    }
+
+    /**
+     * Depth-first search of the subtree rooted at item start, where curTaken[0, start) is already decided,
+     * and value, room and bounding belong to the root of the subtree.
+     */
+    public static void dive(int start, int value, int room, float bounding) {
         int state = 0; // 0 means we are going down, 1 means going up
+        int synced = 0; // maxTaken[0, synced) is the same as curTaken[0, synced)
 
-        for (int i = 0; i >= 0; ) {
+        for (int i = start; i >= start; ) {
+            if (++nodes > nodeLimit) {
+                aborted = true;
+                return;
+            }
             if (state == 0 && (room < 0 || bounding <= maxValue)) { // prune invalid or useless search tree
                 i--;
                 state = 1;
@@ -136,38 +820,220 @@ public class Solver {
             else if (i == items) { // candidate of the result
                 if (maxValue < value) {
                     maxValue = value;
-                    maxTaken = curTaken.clone();
+                    // only the decisions made since the last candidate differ, copy them instead of the whole array
+                    System.arraycopy(curTaken, synced, maxTaken, synced, items - synced);
+                    synced = items;
                 }
                 i--;
                 state = 1;
             }
             else if (state == 0){ // come to a node from its parent
-                branchStack.push(0); // 0 means we have considered the case where item i is chosen (left child)
+                branchStack[i] = 0; // 0 means we have considered the case where item i is chosen (left child)
                 curTaken[i] = 1;
+                synced = Math.min(synced, i);
                 value += values[i];
                 room -= weights[i];
                 i++;
             }
             else { // come to a node from its children
-                // pop stack and decide whether go to right child or back track
-                if (branchStack.pop() == 0) {
+                // decide whether go to right child or back track
+                if (branchStack[i] == 0) {
                     curTaken[i] = 0;
+                    synced = Math.min(synced, i);
                     value -= values[i];
                     room += weights[i];
-                    boundingStack.push(bounding);
-                    branchStack.push(1); // Go to right child node
+                    boundingStack[i] = bounding;
+                    branchStack[i] = 1; // Go to right child node
                     bounding = value + suffixBounding(i + 1, room);
                     state = 0;
                     i++;
                 }
                 else {
-                    bounding = boundingStack.pop();
+                    bounding = boundingStack[i];
                     i--;
                 }
             }
         }
     }
 
+    /**
+     * Best-first version of the helper method. The open nodes are kept in a heap ordered by their bounding, so we
+     * always expand the most promising node, and the largest bounding in the heap is an upper bound of the optimum.
+     * Each open node is a slot in preallocated primitive arrays, holding its depth, value, room, bounding and the
+     * decisions of items [0, depth) as bits. When all openNodes slots are used, the child is searched depth-first
+     * with dive() instead of being pushed, so the memory is bounded.
+     */
+    public static void bestFirstHelper() {
+        int words = (items >> 6) + 1;
+        // never use more than a quarter of the memory for the open nodes
+        long slotBytes = words * 8L + 16;
+        int slots = (int) Math.max(1, Math.min(openNodes, Runtime.getRuntime().maxMemory() / 4 / slotBytes));
+
+        int[] nodeDepth = new int[slots];
+        int[] nodeValue = new int[slots];
+        int[] nodeRoom = new int[slots];
+        float[] nodeBounding = new float[slots];
+        long[] nodeBits = new long[slots * words];
+        int[] heap = new int[slots]; // slots ordered by bounding
+        int[] free = new int[slots]; // stack of unused slots
+        for (int i = 0; i < slots; i++) {
+            free[i] = slots - 1 - i;
+        }
+        int freeSize = slots;
+        int heapSize = 0;
+
+        nodes = 0;
+        aborted = false;
+        long nextReport = REPORT_INTERVAL;
+
+        int root = free[--freeSize];
+        nodeDepth[root] = 0;
+        nodeValue[root] = 0;
+        nodeRoom[root] = capacity;
+        nodeBounding[root] = suffixBounding(0, capacity);
+        heapSize = heapPush(heap, heapSize, root, nodeBounding, nodeDepth);
+
+        while (heapSize > 0) {
+            int node = heap[0];
+            heapSize = heapPop(heap, heapSize, nodeBounding, nodeDepth);
+            float bounding = nodeBounding[node];
+            if (bounding <= maxValue) { // every open node is worse than what we have, so we are done
+                heapSize = 0;
+                free[freeSize++] = node;
+                break;
+            }
+            if (++nodes > nodeLimit) {
+                aborted = true;
+                return;
+            }
+            if (verbose && nodes >= nextReport) {
+                nextReport += REPORT_INTERVAL;
+                System.err.printf("best-first: %d nodes, %d open, value %d, bound %.0f, gap %.4f%%%n",
+                        nodes, heapSize + 1, maxValue, bounding, 100 * (bounding - maxValue) / bounding);
+            }
+
+            int depth = nodeDepth[node];
+            int value = nodeValue[node];
+            int room = nodeRoom[node];
+            int offset = node * words;
+
+            // the two children, item depth is taken (child 1) or not (child 0)
+            for (int child = 1; child >= 0; child--) {
+                int childValue = value + child * values[depth];
+                int childRoom = room - child * weights[depth];
+                if (childRoom < 0) {
+                    continue;
+                }
+                float childBounding = childValue + suffixBounding(depth + 1, childRoom);
+                if (childBounding <= maxValue) {
+                    continue;
+                }
+                if (depth + 1 == items || freeSize == 0) {
+                    // decode the decisions, only needed for a candidate or a depth-first search
+                    for (int i = 0; i < depth; i++) {
+                        curTaken[i] = (int) (nodeBits[offset + (i >> 6)] >>> i) & 1;
+                    }
+                    curTaken[depth] = child;
+                    if (depth + 1 == items) { // candidate of the result
+                        if (maxValue < childValue) {
+                            maxValue = childValue;
+                            System.arraycopy(curTaken, 0, maxTaken, 0, items);
+                        }
+                    }
+                    else { // out of slots, search this child depth-first
+                        dive(depth + 1, childValue, childRoom, childBounding);
+                        if (aborted) {
+                            return;
+                        }
+                    }
+                }
+                else {
+                    int slot = free[--freeSize];
+                    nodeDepth[slot] = depth + 1;
+                    nodeValue[slot] = childValue;
+                    nodeRoom[slot] = childRoom;
+                    nodeBounding[slot] = childBounding;
+                    int childOffset = slot * words;
+                    // the bits beyond depth are never read, so we only copy the words in use
+                    System.arraycopy(nodeBits, offset, nodeBits, childOffset, (depth >> 6) + 1);
+                    if (child == 1) {
+                        nodeBits[childOffset + (depth >> 6)] |= 1L << depth;
+                    }
+                    else {
+                        nodeBits[childOffset + (depth >> 6)] &= ~(1L << depth);
+                    }
+                    heapSize = heapPush(heap, heapSize, slot, nodeBounding, nodeDepth);
+                }
+            }
+            free[freeSize++] = node;
+        }
+
+        if (verbose) {
+            System.err.printf("best-first: %d nodes, optimal value %d%n", nodes, maxValue);
+        }
+    }
+
+    /**
+     * Whether slot a should be expanded before slot b: larger bounding first, and deeper first on ties.
+     */
+    private static boolean before(int a, int b, float[] bounding, int[] depth) {
+        return bounding[a] > bounding[b] || (bounding[a] == bounding[b] && depth[a] > depth[b]);
+    }
+
+    private static int heapPush(int[] heap, int size, int slot, float[] bounding, int[] depth) {
+        int i = size;
+        while (i > 0 && before(slot, heap[(i - 1) / 2], bounding, depth)) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = slot;
+        return size + 1;
+    }
+
+    private static int heapPop(int[] heap, int size, float[] bounding, int[] depth) {
+        size--;
+        int last = heap[size];
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int c = 2 * i + 1;
+            if (c + 1 < size && before(heap[c + 1], heap[c], bounding, depth)) {
+                c++;
+            }
+            if (!before(heap[c], last, bounding, depth)) {
+                break;
+            }
+            heap[i] = heap[c];
+            i = c;
+        }
+        heap[i] = last;
+        return size;
+    }
+
+    /**
+     * Parallel version of the helper method, using a fork/join pool of size threads.
+     * The top of the search tree is split into subtrees which are stolen by idle workers,
+     * and all workers prune against the same incumbent, so it finds the same optimum as helper().
+     */
+    public static void parallelHelper() {
+        // split deep enough that there are plenty of subtrees to steal for each worker
+        int splitDepth = 0;
+        while (splitDepth < items && (1 << splitDepth) < threads * 16) {
+            splitDepth++;
+        }
+
+        incumbent = new AtomicReference<>(new Incumbent(maxValue, maxTaken));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new SubtreeTask(0, 0, capacity, suffixBounding(0, capacity), new int[items], splitDepth));
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        maxValue = incumbent.get().value;
+        maxTaken = incumbent.get().taken;
+    }
+
     /**
      * Recursive version of the helper method, which will cause stack overflow when input size is large
      */
@@ -204,6 +1070,18 @@ public class Solver {
             if(arg.startsWith("-file=")){
                 fileName = arg.substring(6);
             } 
+            else if(arg.startsWith("-threads=")){
+                threads = Integer.parseInt(arg.substring(9));
+            }
+            else if(arg.equals("-verbose")){
+                verbose = true;
+            }
+            else if(arg.equals("-bestFirst")){
+                bestFirst = true;
+            }
+            else if(arg.startsWith("-openNodes=")){
+                openNodes = Integer.parseInt(arg.substring(11));
+            }
         }
         if(fileName == null)
             return;
@@ -239,7 +1117,7 @@ public class Solver {
             weights[i-1] = Integer.parseInt(parts[1]);
         }
 
-        solveLarge();
+        solveAuto();
 
         // the line below use dynamic programming to find the solution
 //        solveDP();
@@ -0,0 +1,158 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Run every tour constructor and search on instances with degenerate geometry: cities on a line, on one axis,
+ * on top of each other, and tiny instances. Each run has to print a valid tour of the length it reports,
+ * and to finish within TIME_LIMIT milliseconds.
+ * Run with: javac *.java && java DegenerateTest
+ */
+public class DegenerateTest {
+    static final long TIME_LIMIT = 20000;
+    static final long SEED = 1; // every run is seeded, and writes no solution file, so a failure can be run alone
+
+    public static void main(String[] args) throws IOException {
+        Map<String, float[][]> instances = new LinkedHashMap<>();
+        instances.put("8 collinear", line(8, 1, 0));
+        instances.put("2000 collinear", line(2000, 1, 0));
+        instances.put("2000 diagonal", line(2000, 1, 1));
+        instances.put("2000 nearly flat", line(2000, 1, 1e-6f));
+        instances.put("2000 on the y axis", line(2000, 0, 1));
+        instances.put("8 duplicates", duplicates(8, 1));
+        instances.put("2000 duplicates", duplicates(2000, 1));
+        instances.put("2000 on 3 points", duplicates(2000, 3));
+        instances.put("1 city", duplicates(1, 1));
+        instances.put("2 cities", line(2, 1, 0));
+        instances.put("3 cities", line(3, 1, 0));
+
+        String[][] modes = {
+            {"-construct=nearest", "-search=oropt", "-kicks=2000"},
+            {"-construct=hilbert", "-search=oropt", "-kicks=2000"},
+            {"-construct=greedy", "-search=oropt", "-kicks=2000"},
+            {"-construct=greedy", "-search=lk", "-kicks=2000"},
+            {"-construct=nearest", "-search=kopt"},
+        };
+        int failures = 0;
+        for (Map.Entry<String, float[][]> instance : instances.entrySet()) {
+            File file = write(instance.getValue());
+            for (String[] mode : modes) {
+                if (mode[1].equals("-search=kopt") && instance.getValue().length > 200) {
+                    continue; // 2000 restarts, too slow for a test on the larger instances
+                }
+                String name = instance.getKey() + " " + String.join(" ", mode);
+                String error = run(file, instance.getValue(), mode);
+                System.out.println((error == null ? "ok   " : "FAIL ") + name + (error == null ? "" : ": " + error));
+                if (error != null) {
+                    failures++;
+                }
+            }
+            file.delete();
+        }
+        if (failures > 0) {
+            throw new AssertionError(failures + " runs failed");
+        }
+    }
+
+    /**
+     * n cities on the line through the origin with direction (dx, dy), in a random order.
+     */
+    private static float[][] line(int n, float dx, float dy) {
+        List<Integer> steps = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            steps.add(i);
+        }
+        Collections.shuffle(steps, new Random(n));
+        float[][] points = new float[n][2];
+        for (int i = 0; i < n; i++) {
+            points[i][0] = steps.get(i) * dx;
+            points[i][1] = steps.get(i) * dy;
+        }
+        return points;
+    }
+
+    /**
+     * n cities on top of each other at the corners of a polygon with distinct corners.
+     */
+    private static float[][] duplicates(int n, int distinct) {
+        float[][] points = new float[n][2];
+        for (int i = 0; i < n; i++) {
+            points[i][0] = 10 * (i % distinct);
+            points[i][1] = 5 * (i % distinct) * (i % distinct);
+        }
+        return points;
+    }
+
+    private static File write(float[][] points) throws IOException {
+        File file = File.createTempFile("tsp", ".data");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try {
+            writer.write(Integer.toString(points.length));
+            writer.newLine();
+            for (float[] p : points) {
+                writer.write(p[0] + " " + p[1]);
+                writer.newLine();
+            }
+        }
+        finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * @return what is wrong with the output of the solver, or null if nothing is.
+     */
+    private static String run(File file, float[][] points, String[] mode) throws IOException {
+        String[] args = new String[mode.length + 4];
+        args[0] = "-file=" + file.getPath();
+        args[1] = "-candidates=10";
+        args[2] = "-seed=" + SEED;
+        args[3] = "-solution=none";
+        System.arraycopy(mode, 0, args, 4, mode.length);
+
+        PrintStream out = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        long start = System.currentTimeMillis();
+        try {
+            System.setOut(new PrintStream(captured));
+            Solver.solve(args);
+        }
+        catch (RuntimeException e) {
+            return e.toString();
+        }
+        finally {
+            System.setOut(out);
+        }
+        long time = System.currentTimeMillis() - start;
+        if (time > TIME_LIMIT) {
+            return "took " + time + " ms";
+        }
+
+        String[] lines = captured.toString().trim().split("\n");
+        double reported = Double.parseDouble(lines[0].trim().split("\\s+")[0]);
+        String[] parts = lines[1].trim().split("\\s+");
+        int n = points.length;
+        if (parts.length != n) {
+            return "the tour has " + parts.length + " cities instead of " + n;
+        }
+        int[] tour = new int[n];
+        boolean[] seen = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            tour[i] = Integer.parseInt(parts[i]);
+            if (tour[i] < 0 || tour[i] >= n || seen[tour[i]]) {
+                return "city " + tour[i] + " is out of range or visited twice";
+            }
+            seen[tour[i]] = true;
+        }
+        double length = 0;
+        for (int i = 0; i < n; i++) {
+            float[] a = points[tour[i]];
+            float[] b = points[tour[(i + 1) % n]];
+            length += Math.sqrt((a[0] - b[0]) * (a[0] - b[0]) + (a[1] - b[1]) * (a[1] - b[1]));
+        }
+        if (Math.abs(length - reported) > 1e-3 * Math.max(1, length)) {
+            return "the tour has length " + length + " but " + reported + " was reported";
+        }
+        return null;
+    }
+}
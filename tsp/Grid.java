@@ -0,0 +1,198 @@
+import java.util.*;
+
+/**
+ * A uniform grid over the cities, with about CITIES_PER_CELL cities per cell, so the cities near a point are
+ * found by looking at the cells around it instead of at every city. The cells are as close to squares as the
+ * bounding box allows, so cities on a line get one row or one column of cells.
+ * The cities of cell c are cities[cellStart[c]], ..., cities[cellStart[c + 1] - 1], and the first count[c] of them
+ * are the ones which have not been removed, so a tour can be built by removing the cities as they are visited.
+ */
+class Grid {
+    static final int CITIES_PER_CELL = 2;
+
+    private final float[][] points;
+    private final float minX;
+    private final float minY;
+    private final float cellWidth;
+    private final float cellHeight;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] cities;
+    private final int[] count;
+    private final int[] slot; // cities[slot[u]] == u
+
+    Grid(float[][] points) {
+        this.points = points;
+        int n = points.length;
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (float[] p : points) {
+            minX = Math.min(minX, p[0]);
+            minY = Math.min(minY, p[1]);
+            maxX = Math.max(maxX, p[0]);
+            maxY = Math.max(maxY, p[1]);
+        }
+        this.minX = minX;
+        this.minY = minY;
+        float width = maxX - minX;
+        float height = maxY - minY;
+        int cells = Math.max(1, n / CITIES_PER_CELL);
+        if (width > 0 && height > 0) {
+            double side = Math.sqrt((double) width * height / cells);
+            columns = (int) Math.min(cells, width / side + 1);
+            rows = (int) Math.min(cells, height / side + 1);
+        }
+        else {
+            columns = width > 0 ? cells : 1;
+            rows = height > 0 ? cells : 1;
+        }
+        cellWidth = width > 0 ? width / columns : 1;
+        cellHeight = height > 0 ? height / rows : 1;
+
+        // counting sort of the cities by cell
+        cellStart = new int[columns * rows + 1];
+        cities = new int[n];
+        for (int u = 0; u < n; u++) {
+            cellStart[cell(u) + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int u = 0; u < n; u++) {
+            cities[fill[cell(u)]++] = u;
+        }
+        count = new int[columns * rows];
+        slot = new int[n];
+        reset();
+    }
+
+    /**
+     * Put back every removed city.
+     */
+    void reset() {
+        for (int c = 0; c < count.length; c++) {
+            count[c] = cellStart[c + 1] - cellStart[c];
+        }
+        for (int i = 0; i < cities.length; i++) {
+            slot[cities[i]] = i;
+        }
+    }
+
+    /**
+     * Remove u, so nearest() does not find it any more, by swapping it with the last city of its cell not removed.
+     */
+    void remove(int u) {
+        int c = cell(u);
+        int i = slot[u];
+        int last = cellStart[c] + count[c] - 1;
+        if (i > last) {
+            return; // already removed
+        }
+        int v = cities[last];
+        cities[i] = v;
+        slot[v] = i;
+        cities[last] = u;
+        slot[u] = last;
+        count[c]--;
+    }
+
+    private int column(float x) {
+        return Math.min(columns - 1, (int) ((x - minX) / cellWidth));
+    }
+
+    private int row(float y) {
+        return Math.min(rows - 1, (int) ((y - minY) / cellHeight));
+    }
+
+    private int cell(int u) {
+        return row(points[u][1]) * columns + column(points[u][0]);
+    }
+
+    private float distance(int u, int v) {
+        float dx = points[u][0] - points[v][0];
+        float dy = points[u][1] - points[v][1];
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Find the k nearest cities of u which have not been removed, not counting u, nearest first.
+     * The rings of cells around the cell of u are visited outwards until the next ring can not hold a closer city,
+     * or is outside the grid.
+     * @return how many were found, which is less than k only if there are not enough cities.
+     */
+    int nearest(int u, int k, int[] result, int offset) {
+        float[] best = new float[k]; // squared distances of result[offset], ..., sorted
+        int found = 0;
+        int cx = column(points[u][0]);
+        int cy = row(points[u][1]);
+        for (int ring = 0; ; ring++) {
+            boolean moreColumns = cx - ring >= 0 || cx + ring < columns;
+            boolean moreRows = cy - ring >= 0 || cy + ring < rows;
+            if (!moreColumns && !moreRows) { // the rings so far cover the whole grid
+                break;
+            }
+            if (found == k) {
+                // every city in this ring or further is at least ring - 1 cells away along x or along y
+                float reach = Math.min(moreColumns ? (ring - 1) * cellWidth : Float.MAX_VALUE,
+                        moreRows ? (ring - 1) * cellHeight : Float.MAX_VALUE);
+                if (reach > 0 && reach * reach > best[k - 1]) {
+                    break;
+                }
+            }
+            int firstColumn = Math.max(0, cx - ring);
+            int lastColumn = Math.min(columns - 1, cx + ring);
+            for (int y = Math.max(0, cy - ring); y <= Math.min(rows - 1, cy + ring); y++) {
+                // the whole row on the top and bottom of the ring, only the two ends in between
+                boolean edge = y == cy - ring || y == cy + ring;
+                int step = edge ? 1 : Math.max(1, 2 * ring);
+                for (int x = edge ? firstColumn : cx - ring; x <= lastColumn; x += step) {
+                    if (x < 0) {
+                        continue;
+                    }
+                    int c = y * columns + x;
+                    for (int i = cellStart[c]; i < cellStart[c] + count[c]; i++) {
+                        int v = cities[i];
+                        if (v == u) {
+                            continue;
+                        }
+                        float d = distance(u, v);
+                        if (found == k && d >= best[k - 1]) {
+                            continue;
+                        }
+
+                        // insert v in the sorted result
+                        int j = found < k ? found++ : k - 1;
+                        while (j > 0 && best[j - 1] > d) {
+                            best[j] = best[j - 1];
+                            result[offset + j] = result[offset + j - 1];
+                            j--;
+                        }
+                        best[j] = d;
+                        result[offset + j] = v;
+                        if (found == k && best[k - 1] == 0) { // k cities on top of u, none can be closer
+                            return found;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the k nearest cities of every city, those of city u are at u * k, ..., u * k + k - 1.
+     * With fewer than k + 1 cities the lists are padded with the nearest city.
+     */
+    int[] candidates(int k) {
+        int n = points.length;
+        int[] result = new int[n * k];
+        for (int u = 0; u < n; u++) {
+            int found = nearest(u, k, result, u * k);
+            for (int i = found; i < k; i++) {
+                result[u * k + i] = found > 0 ? result[u * k] : u;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,338 @@
+import java.util.*;
+
+/**
+ * 2-opt and Or-opt local search with don't-look bits. Only the cities in the active queue are looked at:
+ * a city leaves it when no improving move starts from it, and comes back when one of its tour edges changes.
+ * Every change of the tour is a 2-opt move, and the moves since the last commit() are kept so rollback()
+ * can undo them, which lets kick() try a perturbation and drop it if it does not pay off.
+ * With setDepth(), the 2-opt step is replaced by a Lin-Kernighan style chain of up to depth 2-opt moves.
+ */
+class LocalSearch {
+    static final double EPSILON = 1e-7;
+    static final int SEGMENT = 3; // the longest segment Or-opt moves
+    static final int KICK_SPAN = 50; // a double bridge kick cuts the tour within this many cities
+
+    private final float[][] points;
+    private final int[] candidates;
+    private final int candidateCount;
+    private final Tour tour;
+    private final int n;
+    private double length;
+
+    // active cities, a ring buffer of at most n cities, queued[u] is the don't-look bit of u negated
+    private final int[] queue;
+    private final boolean[] queued;
+    private int head;
+    private int size;
+
+    // the moves since the last commit, move i replaced edges (a, b) and (c, d) by (a, c) and (b, d)
+    private int[] journal = new int[64];
+    private int journalSize;
+    private double committedLength;
+
+    // Lin-Kernighan: the longest chain of moves, and how many alternatives are tried at each of the first levels
+    private int depth = 0;
+    private int[] breadth = {1};
+    private double bestGain; // of the best prefix of the current chain, which ends at journal entry bestMark
+    private int bestMark;
+
+    LocalSearch(float[][] points, int[] candidates, int candidateCount, int[] next) {
+        this.points = points;
+        this.candidates = candidates;
+        this.candidateCount = candidateCount;
+        n = points.length;
+        tour = new Tour(next);
+        for (int u = 0; u < n; u++) {
+            length += distance(u, next[u]);
+        }
+        committedLength = length;
+        queue = new int[n];
+        queued = new boolean[n];
+        for (int u = 0; u < n; u++) {
+            push(u);
+        }
+    }
+
+    double length() {
+        return length;
+    }
+
+    /**
+     * Use Lin-Kernighan chains of at most depth moves, with breadth[i] alternatives at level i + 1 and 1 below them.
+     */
+    void setDepth(int depth, int[] breadth) {
+        this.depth = depth;
+        this.breadth = breadth;
+    }
+
+    Tour tour() {
+        return tour;
+    }
+
+    private double distance(int u, int v) {
+        double dx = points[u][0] - points[v][0];
+        double dy = points[u][1] - points[v][1];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private void push(int u) {
+        if (!queued[u]) {
+            queued[u] = true;
+            queue[(head + size++) % n] = u;
+        }
+    }
+
+    private int pop() {
+        int u = queue[head];
+        head = (head + 1) % n;
+        size--;
+        queued[u] = false;
+        return u;
+    }
+
+    /**
+     * Replace the edges (a, b) and (c, d) by (a, c) and (b, d), where b follows a and d follows c
+     * in the same direction of the tour, by reversing the path from b to c.
+     */
+    void move(int a, int b, int c, int d) {
+        tour.move(a, b, c, d);
+        length += distance(a, c) + distance(b, d) - distance(a, b) - distance(c, d);
+        if (journalSize + 4 > journal.length) {
+            journal = Arrays.copyOf(journal, journal.length * 2);
+        }
+        journal[journalSize++] = a;
+        journal[journalSize++] = b;
+        journal[journalSize++] = c;
+        journal[journalSize++] = d;
+    }
+
+    /**
+     * Undo the moves after the first mark entries of the journal, last first.
+     */
+    private void undo(int mark) {
+        while (journalSize > mark) {
+            int d = journal[--journalSize];
+            int c = journal[--journalSize];
+            int b = journal[--journalSize];
+            int a = journal[--journalSize];
+            tour.move(a, c, b, d); // the move left the edges (a, c) and (b, d), swap them back
+            length += distance(a, b) + distance(c, d) - distance(a, c) - distance(b, d);
+        }
+    }
+
+    /**
+     * Make the cities of the moves after the first mark entries of the journal active again.
+     */
+    private void activate(int mark) {
+        for (int i = mark; i < journalSize; i++) {
+            push(journal[i]);
+        }
+    }
+
+    /**
+     * Run until no active city has an improving move.
+     */
+    void optimize() {
+        while (size > 0) {
+            int a = pop();
+            int mark = journalSize;
+            if (improve(a)) {
+                activate(mark);
+            }
+        }
+    }
+
+    private boolean improve(int a) {
+        if (depth > 0) {
+            return linKernighan(a, true) || linKernighan(a, false) || orOpt(a);
+        }
+        return twoOpt(a, true) || twoOpt(a, false) || orOpt(a);
+    }
+
+    /**
+     * Look for a chain of 2-opt moves which starts by removing the edge from t1 to its successor (forward)
+     * or predecessor, and keep the prefix of the chain which shortens the tour the most.
+     */
+    private boolean linKernighan(int t1, boolean forward) {
+        int t2 = forward ? tour.next(t1) : tour.prev(t1);
+        bestGain = 0;
+        return deepen(t1, t2, distance(t1, t2), 1);
+    }
+
+    /**
+     * One level of the chain: the tour is closed by the edge (t1, t2), and gain is what the chain has removed
+     * less what it has added, not counting that edge. Add an edge (t2, t3) to a candidate t3 and remove (t3, t4),
+     * which is a 2-opt move closing the tour with (t1, t4), and go on from t4 until depth moves.
+     * If some prefix of the chain shortened the tour, undo the moves after the best one and stop,
+     * otherwise undo the move and try the next candidate, up to the breadth of this level.
+     */
+    private boolean deepen(int t1, int t2, double gain, int level) {
+        int width = level <= breadth.length ? breadth[level - 1] : 1;
+        int tried = 0;
+        for (int k = t2 * candidateCount; k < (t2 + 1) * candidateCount && tried < width; k++) {
+            int t3 = candidates[k];
+            double g1 = gain - distance(t2, t3);
+            if (g1 <= EPSILON) {
+                break;
+            }
+            if (t3 == t1 || t3 == tour.next(t2) || t3 == tour.prev(t2)) {
+                continue;
+            }
+            // undoing a move gives back the same cycle, but maybe in the other direction
+            int t4 = tour.next(t1) == t2 ? tour.prev(t3) : tour.next(t3);
+            tried++;
+            int mark = journalSize;
+            move(t1, t2, t4, t3);
+            double g2 = g1 + distance(t3, t4);
+            if (g2 - distance(t4, t1) > bestGain) {
+                bestGain = g2 - distance(t4, t1);
+                bestMark = journalSize;
+            }
+            if (level < depth && deepen(t1, t4, g2, level + 1)) {
+                return true;
+            }
+            if (bestGain > EPSILON) {
+                undo(bestMark);
+                return true;
+            }
+            undo(mark);
+        }
+        return false;
+    }
+
+    /**
+     * Look for a 2-opt move which removes the edge from a to its successor (forward) or predecessor.
+     * The candidates are sorted by distance, so we stop once the new edge from a is not shorter than the old one.
+     */
+    private boolean twoOpt(int a, boolean forward) {
+        int b = forward ? tour.next(a) : tour.prev(a);
+        double removed = distance(a, b);
+        for (int k = a * candidateCount; k < (a + 1) * candidateCount; k++) {
+            int c = candidates[k];
+            double g1 = removed - distance(a, c);
+            if (g1 <= EPSILON) {
+                break;
+            }
+            int d = forward ? tour.next(c) : tour.prev(c);
+            if (c == b || d == a) {
+                continue;
+            }
+            if (g1 + distance(c, d) - distance(b, d) > EPSILON) {
+                move(a, b, c, d);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Look for an Or-opt move of the segment of 1 to SEGMENT cities starting at a, going forward, to between
+     * a candidate c of a and one of its tour neighbors e, with a next to c, in either orientation.
+     */
+    private boolean orOpt(int a) {
+        int s2 = a;
+        for (int length = 1; length <= SEGMENT && length + 2 < n; length++, s2 = tour.next(s2)) {
+            int p = tour.prev(a);
+            int q = tour.next(s2);
+            double removed = distance(p, a) + distance(s2, q) - distance(p, q);
+            if (removed <= EPSILON) {
+                continue;
+            }
+            for (int k = a * candidateCount; k < (a + 1) * candidateCount; k++) {
+                int c = candidates[k];
+                double g1 = removed - distance(a, c);
+                if (g1 <= EPSILON) {
+                    break;
+                }
+                if (tour.between(a, c, s2)) {
+                    continue;
+                }
+                for (int side = 0; side < 2; side++) {
+                    int e = side == 0 ? tour.next(c) : tour.prev(c);
+                    if (tour.between(a, e, s2)) {
+                        continue;
+                    }
+                    if (g1 + distance(c, e) - distance(s2, e) > EPSILON) {
+                        moveSegment(a, s2, c, e);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move the segment which goes forward from s1 to s2 between the tour neighbors c and d, with s1 next to c.
+     * With the tour edge between c and d going forward from u to v, this takes two or three 2-opt moves.
+     */
+    private void moveSegment(int s1, int s2, int c, int d) {
+        int p = tour.prev(s1);
+        int q = tour.next(s2);
+        int u = tour.next(c) == d ? c : d;
+        int v = u == c ? d : c;
+        move(p, s1, u, v); // p u .. q s2 .. s1 v
+        move(p, u, q, s2); // p q .. u s2 .. s1 v
+        if (u == c) {
+            move(u, s2, s1, v); // p q .. u s1 .. s2 v
+        }
+    }
+
+    /**
+     * Perturb the tour by swapping two blocks of cities, with the three cuts within KICK_SPAN cities after a random
+     * city, which is a double bridge move.
+     */
+    void kick(Random random) {
+        int span = Math.min(KICK_SPAN, n - 1);
+        if (span < 3) {
+            return;
+        }
+        int cut1 = 1 + random.nextInt(span - 1);
+        int cut2 = 1 + random.nextInt(span - 1);
+        if (cut1 == cut2) {
+            return;
+        }
+        if (cut1 > cut2) {
+            int t = cut1;
+            cut1 = cut2;
+            cut2 = t;
+        }
+        // a1 [b1 .. a2] [b2 .. a3] b3 becomes a1 [b2 .. a3] [b1 .. a2] b3
+        int a1 = random.nextInt(n);
+        int b1 = tour.next(a1);
+        int a2 = b1;
+        for (int i = 1; i < cut1; i++) {
+            a2 = tour.next(a2);
+        }
+        int b2 = tour.next(a2);
+        int a3 = a2;
+        for (int i = cut1; i < cut2; i++) {
+            a3 = tour.next(a3);
+        }
+        int b3 = tour.next(a3);
+        int mark = journalSize;
+        move(a1, b1, a3, b3); // a1 a3 .. b2 a2 .. b1 b3
+        move(a1, a3, b2, a2); // a1 b2 .. a3 a2 .. b1 b3
+        move(a3, a2, b1, b3); // a1 b2 .. a3 b1 .. a2 b3
+        activate(mark);
+    }
+
+    /**
+     * Keep the changes since the last commit.
+     */
+    void commit() {
+        journalSize = 0;
+        committedLength = length;
+    }
+
+    /**
+     * Undo the changes since the last commit, in reverse order.
+     */
+    void rollback() {
+        undo(0);
+        length = committedLength;
+        while (size > 0) { // only the cities still queued, so a rollback stays local
+            pop();
+        }
+    }
+}
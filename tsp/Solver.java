@@ -2,35 +2,62 @@ import java.io.*;
 import java.util.*;
 import java.lang.Math;
 
+/**
+ * A FIFO tabu of at most size ids in [0, universe). The ids are kept in a ring buffer, and stamp[id] is the
+ * number of pushes up to and including the last push of id, so id is in the tabu iff it was pushed after
+ * the last popped entry. No operation allocates or boxes, and clear() is O(1).
+ */
 class Tabu {
-    private int size;
-    LinkedList<Integer> tabuQueue;
-    private HashSet<Integer> tabuSet;
+    private final int size;
+    private final int[] queue;
+    private final int[] stamp;
+    private int pushed;
+    private int popped;
 
-    Tabu(int size) {
+    Tabu(int size, int universe) {
         this.size = size;
-        tabuSet = new HashSet<>();
-        tabuQueue = new LinkedList<>();
+        queue = new int[size + 1];
+        stamp = new int[universe];
     }
 
+    /**
+     * Like the set it replaces, an id outside [0, universe) such as -1 is never in the tabu.
+     */
     boolean contains(int node) {
-        return tabuSet.contains(node);
+        return node >= 0 && node < stamp.length && stamp[node] > popped;
     }
 
-    void push(int node) {
-        if (tabuSet.contains(node)) {
-            return;
+    /**
+     * @return the id which left the tabu to make room for node, or -1.
+     */
+    int push(int node) {
+        if (contains(node)) {
+            return -1;
+        }
+        queue[pushed % queue.length] = node;
+        stamp[node] = ++pushed;
+        if (pushed - popped > size) {
+            return pop();
         }
-        tabuSet.add(node);
-        tabuQueue.addLast(node);
-        if (tabuSet.size() > size) {
-            pop();
+        return -1;
+    }
+
+    int pop() {
+        if (pushed == popped) {
+            throw new NoSuchElementException();
         }
+        return queue[popped++ % queue.length];
     }
 
-    void pop() {
-        int node = tabuQueue.removeFirst();
-        tabuSet.remove(node);
+    /**
+     * Empty the tabu. The stamps only have to be reset once the counters get large.
+     */
+    void clear() {
+        if (pushed > Integer.MAX_VALUE / 2) {
+            Arrays.fill(stamp, 0);
+            pushed = 0;
+        }
+        popped = pushed;
     }
 }
 
@@ -44,9 +71,32 @@ public class Solver {
     private static int[] prev;
     private static float[] dist;
 
-    private static Random random = new Random();
+    private static Random random;
     private static Tabu tabu;
 
+    private static Tour tour; // the tour kOpt works on
+    // the longer tour edge of each city, or -1 while the city is in the tabu, and a tournament tree over them:
+    // winner[i] is the city with the longer edge of winner[2 * i] and winner[2 * i + 1], winner[nodeCount + u] is u
+    private static float[] longest;
+    private static int[] winner;
+
+    // the neighborhood moves only look at the nearest cities of a city,
+    // candidates[u * candidateCount], ..., candidates[u * candidateCount + candidateCount - 1], nearest first
+    private static int candidateCount;
+    private static int[] candidates;
+    private static Grid grid;
+
+    private static String constructMode; // nearest, hilbert or greedy
+    private static final int HILBERT_SIDE = 1 << 16;
+
+    private static String searchMode; // kopt, oropt for 2-opt and Or-opt with kicks, or lk
+    private static int kickLimit;
+    // the longest Lin-Kernighan chain, and how many alternatives to try at its first levels
+    private static int depth;
+    private static int[] breadth;
+
+    private static String solutionFile; // where the solution is written too, or none
+
     public static void main(String[] args) {
         try {
             solve(args);
@@ -85,37 +135,177 @@ public class Solver {
         return result;
     }
 
-    private static float greedy() {
+    /**
+     * Build a tour with the constructor chosen by -construct.
+     * @return the total distance of the tour
+     */
+    private static float construct() {
+        if (constructMode.equals("hilbert")) {
+            spaceFillingCurve();
+        }
+        else if (constructMode.equals("greedy")) {
+            greedyEdge();
+        }
+        else {
+            nearestNeighbor();
+        }
+        reconstructTour();
         float result = 0;
-        HashSet<Integer> set = new HashSet<>();
         for (int i = 0; i < nodeCount; i++) {
-            set.add(i);
+            result += dist[i];
         }
+        return result;
+    }
+
+    /**
+     * Start from a random city and always go to the nearest city not visited yet,
+     * which the grid finds by looking around the current city.
+     */
+    private static void nearestNeighbor() {
+        grid.reset();
+        int[] nearest = new int[1];
         int start = random.nextInt(nodeCount);
         int p = start;
-        set.remove(p);
-        while (!set.isEmpty()) {
-            float minD = Float.MAX_VALUE;
-            int n = -1;
-            for (int i : set) {
-                float d = length(points[i], points[p]);
-                if (d < minD) {
-                    minD = d;
-                    n = i;
+        grid.remove(p);
+        for (int i = 1; i < nodeCount; i++) {
+            grid.nearest(p, 1, nearest, 0);
+            next[p] = nearest[0];
+            p = nearest[0];
+            grid.remove(p);
+        }
+        next[p] = start;
+    }
+
+    /**
+     * Visit the cities in the order of a Hilbert curve over their bounding square, so cities close on the curve
+     * are close in the plane. This is a sort, and the same tour every time.
+     */
+    private static void spaceFillingCurve() {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (float[] p : points) {
+            minX = Math.min(minX, p[0]);
+            minY = Math.min(minY, p[1]);
+            maxX = Math.max(maxX, p[0]);
+            maxY = Math.max(maxY, p[1]);
+        }
+        double side = Math.max(Math.max(maxX - minX, maxY - minY), 1e-6f);
+        long[] keys = new long[nodeCount];
+        for (int u = 0; u < nodeCount; u++) {
+            int x = (int) ((points[u][0] - minX) / side * (HILBERT_SIDE - 1));
+            int y = (int) ((points[u][1] - minY) / side * (HILBERT_SIDE - 1));
+            keys[u] = hilbert(x, y) << 32 | u;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < nodeCount; i++) {
+            next[(int) keys[i]] = (int) keys[i + 1 == nodeCount ? 0 : i + 1];
+        }
+    }
+
+    /**
+     * @return the distance along the Hilbert curve over the HILBERT_SIDE by HILBERT_SIDE grid to the cell (x, y).
+     */
+    private static long hilbert(int x, int y) {
+        long d = 0;
+        for (int s = HILBERT_SIDE / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant so the curve inside it starts and ends like the whole curve
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = HILBERT_SIDE - 1 - x;
+                    y = HILBERT_SIDE - 1 - y;
                 }
+                int t = x;
+                x = y;
+                y = t;
             }
-            set.remove(n);
-            next[p] = n;
-            prev[n] = p;
-            dist[p] = minD;
-            result += minD;
-            p = n;
         }
-        next[p] = start;
-        prev[start] = p;
-        dist[p] = length(points[start], points[p]);
-        result += dist[p];
-        return result;
+        return d;
+    }
+
+    /**
+     * Add the candidate edges shortest first, skipping an edge when it would give a city a third edge or close
+     * a cycle. Then join the paths which are left: from the end of a path, go to the nearest end of another path,
+     * where the grid only holds the ends of the paths not joined yet.
+     */
+    private static void greedyEdge() {
+        int[] adjacent = new int[2 * nodeCount];
+        Arrays.fill(adjacent, -1);
+        int[] parent = new int[nodeCount]; // union-find of the paths
+        for (int u = 0; u < nodeCount; u++) {
+            parent[u] = u;
+        }
+        int paths = nodeCount; // every city starts as a path of its own, every edge joins two paths
+
+        // sort the edges by length, a non-negative float orders like its bits
+        long[] edges = new long[nodeCount * candidateCount];
+        for (int k = 0; k < edges.length; k++) {
+            float d = length(points[k / candidateCount], points[candidates[k]]);
+            edges[k] = (long) Float.floatToIntBits(d) << 32 | k;
+        }
+        Arrays.sort(edges);
+        for (long edge : edges) {
+            int k = (int) edge;
+            int u = k / candidateCount;
+            int v = candidates[k];
+            if (u == v || adjacent[2 * u + 1] >= 0 || adjacent[2 * v + 1] >= 0) {
+                continue;
+            }
+            int ru = find(parent, u);
+            int rv = find(parent, v);
+            if (ru == rv) {
+                continue;
+            }
+            parent[ru] = rv;
+            paths--;
+            adjacent[adjacent[2 * u] < 0 ? 2 * u : 2 * u + 1] = v;
+            adjacent[adjacent[2 * v] < 0 ? 2 * v : 2 * v + 1] = u;
+        }
+
+        grid.reset();
+        int start = -1;
+        for (int u = 0; u < nodeCount; u++) {
+            if (adjacent[2 * u + 1] >= 0) {
+                grid.remove(u);
+            }
+            else if (start < 0) {
+                start = u;
+            }
+        }
+        int[] nearest = new int[1];
+        int e = start;
+        while (true) {
+            // follow the path from its end e to its other end
+            grid.remove(e);
+            int before = -1;
+            int u = e;
+            while (true) {
+                int w = adjacent[2 * u] == before ? adjacent[2 * u + 1] : adjacent[2 * u];
+                if (w < 0) {
+                    break;
+                }
+                next[u] = w;
+                before = u;
+                u = w;
+            }
+            grid.remove(u);
+            if (--paths == 0) { // this was the last path, close the tour
+                next[u] = start;
+                break;
+            }
+            grid.nearest(u, 1, nearest, 0);
+            next[u] = nearest[0];
+            e = nearest[0];
+        }
+    }
+
+    private static int find(int[] parent, int u) {
+        while (parent[u] != u) {
+            parent[u] = parent[parent[u]];
+            u = parent[u];
+        }
+        return u;
     }
 
     /**
@@ -128,82 +318,139 @@ public class Solver {
         }
     }
 
+    /**
+     * Fill longest and winner for a new tour.
+     */
+    private static void buildLongest() {
+        longest = new float[nodeCount];
+        winner = new int[2 * nodeCount];
+        for (int u = 0; u < nodeCount; u++) {
+            longest[u] = longestEdge(u);
+            winner[nodeCount + u] = u;
+        }
+        for (int i = nodeCount - 1; i >= 1; i--) {
+            winner[i] = longest[winner[2 * i]] >= longest[winner[2 * i + 1]] ? winner[2 * i] : winner[2 * i + 1];
+        }
+    }
+
+    private static float longestEdge(int u) {
+        if (tabu.contains(u)) {
+            return -1;
+        }
+        return Math.max(length(points[u], points[tour.next(u)]), length(points[u], points[tour.prev(u)]));
+    }
+
+    /**
+     * The edges of u or its tabu state changed, update longest[u] and the winners above it.
+     */
+    private static void updateLongest(int u) {
+        longest[u] = longestEdge(u);
+        for (int i = (nodeCount + u) / 2; i >= 1; i /= 2) {
+            winner[i] = longest[winner[2 * i]] >= longest[winner[2 * i + 1]] ? winner[2 * i] : winner[2 * i + 1];
+        }
+    }
+
+    /**
+     * Tour.move, keeping longest up to date for the four cities whose edges change.
+     */
+    private static void moveTour(int a, int b, int c, int d) {
+        tour.move(a, b, c, d);
+        updateLongest(a);
+        updateLongest(b);
+        updateLongest(c);
+        updateLongest(d);
+    }
+
+    /**
+     * Starting from the longest tour edge with a city not in the tabu, make up to k - 1 2-opt moves in a chain,
+     * each one removing the edge added to the end of the previous one, and keep the prefix of the chain which
+     * shortens the tour the most. The moves are made on the tour and the ones after that prefix are undone.
+     * @return the change in the length of the tour
+     */
     private static float kOpt(int k) {
         k--; // 2-Opt means we are swapping 2 edges once, and we swap edges incrementally
         float minDiff = 0;
         float diff = 0;
-        float maxDist = 0;
-        int selected = -1;
-        for (int i = 0; i < nodeCount; i++) {
-            if (dist[i] > maxDist && !tabu.contains(i)) {
-                maxDist = dist[i];
-                selected = i;
-            }
+        int selected = winner[1];
+        float maxDist = longest[selected];
+        if (maxDist <= 0) { // every edge left has length 0, or its cities are in the tabu
+            return 0;
         }
+        int after = tour.next(selected);
+        int before = tour.prev(selected);
+        int selectedNext = length(points[selected], points[after]) >= length(points[selected], points[before])
+                ? after : before;
 
-        assert selected != -1; // We are promised to get a node
-
-        int[] bestNext = next.clone(); // The best solution we get in this k-Opt operation
+        int[] chain = new int[4 * k]; // move i replaced the edges (a, b) and (c, d) at chain[4 * i], ...
+        int moves = 0;
+        int bestMoves = 0; // the moves of the best prefix of the chain
         while (k-- > 0 && !tabu.contains(selected)) {
-            tabu.push(selected);
-            float foundEdge = 0;
+            int released = tabu.push(selected);
+            updateLongest(selected);
+            if (released >= 0) {
+                updateLongest(released);
+            }
+            // a move may leave the tour in the other direction, go the way from selected to selectedNext
+            boolean forward = tour.next(selected) == selectedNext;
+            int selectedPrev = forward ? tour.prev(selected) : tour.next(selected);
             float foundEdge2 = 0;
             float improvement = 0;
             int candidate = -1;
-            for (int i = 0; i < nodeCount; i++) {
-                if (i != selected && i != next[selected] && i != prev[selected]
-                        && !tabu.contains(candidate)) {
+            int candidateNext = -1;
+            for (int c = selected * candidateCount; c < (selected + 1) * candidateCount; c++) {
+                int i = candidates[c];
+                if (i != selected && i != selectedNext && i != selectedPrev
+                        && !tabu.contains(i)) {
+                    int iNext = forward ? tour.next(i) : tour.prev(i);
                     float newEdge = length(points[i], points[selected]);
-                    float newEdge2 = length(points[next[i]], points[next[selected]]);
-                    float temp = newEdge + newEdge2 - maxDist - dist[i];
+                    float newEdge2 = length(points[iNext], points[selectedNext]);
+                    float temp = newEdge + newEdge2 - maxDist - length(points[i], points[iNext]);
                     if (temp <improvement) {
                         improvement = temp;
-                        foundEdge = newEdge;
                         foundEdge2 = newEdge2;
                         candidate = i;
+                        candidateNext = iNext;
                     }
                 }
             }
             if (candidate == -1) {
                 break;
             }
-            int candidateNext = next[candidate];
-            int selectedNext = next[selected];
             diff += improvement;
-            next[selected] = candidate;
-            dist[selected] = foundEdge;
-            for (int j = candidate; j != selectedNext; j = prev[j]) {
-                dist[j] = dist[prev[j]];
-                next[j] = prev[j];
-            }
-            for (int j = selected; j != selectedNext; j = next[j]) {
-                prev[next[j]] = j;
-            }
-            next[selectedNext] = candidateNext;
-            prev[candidateNext] = selectedNext;
-            dist[selectedNext] = foundEdge2;
+            moveTour(selected, selectedNext, candidate, candidateNext);
+            chain[4 * moves] = selected;
+            chain[4 * moves + 1] = selectedNext;
+            chain[4 * moves + 2] = candidate;
+            chain[4 * moves + 3] = candidateNext;
+            moves++;
             selected = selectedNext;
+            selectedNext = candidateNext;
             maxDist = foundEdge2;
             if (diff < minDiff) {
                 minDiff = diff;
-                bestNext = next.clone();
+                bestMoves = moves;
             }
         }
 
-        next = bestNext.clone();
-        reconstructTour();
+        // the move (a, b, c, d) left the edges (a, c) and (b, d), swap them back
+        while (moves > bestMoves) {
+            moves--;
+            moveTour(chain[4 * moves], chain[4 * moves + 2], chain[4 * moves + 1], chain[4 * moves + 3]);
+        }
         return minDiff;
     }
 
     private static void search() {
         int tryCount = 0;
         int tryLimit = 2000;
-        minValue = greedy();
+        minValue = construct();
         int[] bestNext = next.clone();
+        tabu = new Tabu(nodeCount / 10, nodeCount);
         while (tryCount < tryLimit) {
-            int tabuSize = nodeCount / 10;
-            tabu = new Tabu(tabuSize);
-            float value = greedy();
+            tabu.clear();
+            float value = construct();
+            tour = new Tour(next);
+            buildLongest();
             int threshold = 20;
             int pressure = 0;
             while (pressure < threshold) {
@@ -221,7 +468,7 @@ public class Solver {
             }
             if (minValue > value) {
                 minValue = value;
-                bestNext = next.clone();
+                tour.toNext(bestNext);
             }
             tryCount++;
         }
@@ -231,17 +478,97 @@ public class Solver {
         }
     }
 
+    /**
+     * Start from the constructed tour, and improve it with 2-opt, or Lin-Kernighan chains in lk mode, and Or-opt.
+     * Then repeatedly kick it with a local double bridge and improve it again, where only the cities around
+     * the kick are active, and keep the result if it is shorter.
+     */
+    private static void searchLocal() {
+        construct();
+        LocalSearch engine = new LocalSearch(points, candidates, candidateCount, next);
+        if (searchMode.equals("lk")) {
+            engine.setDepth(depth, breadth);
+        }
+        engine.optimize();
+        engine.commit();
+        for (int kick = 0; kick < kickLimit; kick++) {
+            double before = engine.length();
+            engine.kick(random);
+            engine.optimize();
+            if (engine.length() < before - LocalSearch.EPSILON) {
+                engine.commit();
+            }
+            else {
+                engine.rollback();
+            }
+        }
+
+        engine.tour().toNext(next);
+        minValue = (float) engine.length();
+        for (int i = 0, j = 0; i < nodeCount; i++, j = next[j]) {
+            solution[i] = j;
+        }
+    }
+
+    /**
+     * Set the options to their defaults and drop what a previous solve left behind,
+     * so every solve in the same JVM starts the same way.
+     */
+    private static void reset() {
+        random = new Random();
+        candidateCount = 10;
+        constructMode = "nearest";
+        searchMode = "kopt";
+        kickLimit = 100000;
+        depth = 8;
+        breadth = new int[] {10, 3, 1};
+        solutionFile = "solution";
+        tabu = null;
+        tour = null;
+        longest = null;
+        winner = null;
+    }
+
     /**
      * Read the instance, solve it, and print the solution in the standard output
      */
     public static void solve(String[] args) throws IOException {
         String fileName = null;
+        reset();
         
         // get the temp file name
         for(String arg : args){
             if(arg.startsWith("-file=")){
                 fileName = arg.substring(6);
-            } 
+            }
+            else if(arg.startsWith("-seed=")){
+                random = new Random(Long.parseLong(arg.substring(6)));
+            }
+            else if(arg.startsWith("-solution=")){
+                solutionFile = arg.substring(10);
+            }
+            else if(arg.startsWith("-candidates=")){
+                candidateCount = Integer.parseInt(arg.substring(12));
+            }
+            else if(arg.startsWith("-search=")){
+                searchMode = arg.substring(8);
+            }
+            else if(arg.startsWith("-construct=")){
+                constructMode = arg.substring(11);
+            }
+            else if(arg.startsWith("-kicks=")){
+                kickLimit = Integer.parseInt(arg.substring(7));
+            }
+            else if(arg.startsWith("-depth=")){
+                depth = Integer.parseInt(arg.substring(7));
+            }
+            else if(arg.startsWith("-breadth=")){
+                String[] parts = arg.substring(9).split(",");
+                breadth = new int[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    breadth[i] = Integer.parseInt(parts[i]);
+                }
+            }
         }
         if(fileName == null)
             return;
@@ -272,12 +599,21 @@ public class Solver {
             points[i][1] = Float.parseFloat(parts[1]);
         }
 
+        candidateCount = Math.max(1, Math.min(candidateCount, nodeCount - 1));
+        grid = new Grid(points);
+        candidates = grid.candidates(candidateCount);
+
         solution = new int[nodeCount];
         next = new int[nodeCount];
         prev = new int[nodeCount];
         dist = new float[nodeCount];
 
-        search();
+        if (searchMode.equals("oropt") || searchMode.equals("lk")) {
+            searchLocal();
+        }
+        else {
+            search();
+        }
 
         // prepare the solution in the specified output format
         System.out.println(minValue + " 0");
@@ -286,7 +622,10 @@ public class Solver {
         }
         System.out.println("");
 
-        BufferedWriter writer = new BufferedWriter(new FileWriter("solution"));
+        if (solutionFile.equals("none")) {
+            return;
+        }
+        BufferedWriter writer = new BufferedWriter(new FileWriter(solutionFile));
         try {
             writer.write(minValue + " 0");
             writer.newLine();
@@ -0,0 +1,304 @@
+/**
+ * A tour as a two-level doubly-linked list. The cities are cut into segments of about sqrt(n) cities,
+ * and the segments are linked in the order of the tour. Segment s holds the cities order[low[s]], ..., order[high[s]],
+ * in the direction of the tour unless reversed[s], and its first city is start[s] cities after the first city
+ * of the list, so next, prev and between are O(1).
+ * Reversing a path reverses whichever of the path and the rest of the tour is shorter: both give the same cycle.
+ * A path of at most SWAP_GROUPS * sqrt(n) cities is reversed by swapping its cities in place. A longer one is cut
+ * off at both ends by splitting segments, and then only its segments are flipped and linked the other way.
+ * Both are O(sqrt(n)), and once the splits have made too many segments, they are laid out again.
+ */
+class Tour {
+    static final int SWAP_GROUPS = 4; // paths of at most this many times sqrt(n) cities are reversed by swapping
+
+    private final int n;
+    private final int[] order;
+    private final int[] slot; // order[slot[u]] == u
+    private final int[] parent; // the segment of each city
+    private final int[] scratch;
+
+    private final int groupSize;
+    private final int capacity;
+    private final int[] low;
+    private final int[] high;
+    private final int[] start;
+    private final int[] nextSegment;
+    private final int[] prevSegment;
+    private final boolean[] reversed;
+    private int segments;
+
+    /**
+     * @param next: next[u] is the city after u.
+     */
+    Tour(int[] next) {
+        n = next.length;
+        order = new int[n];
+        slot = new int[n];
+        parent = new int[n];
+        scratch = new int[n];
+        groupSize = Math.max(1, (int) Math.ceil(Math.sqrt(n)));
+        capacity = 2 * ((n + groupSize - 1) / groupSize) + 2;
+        low = new int[capacity];
+        high = new int[capacity];
+        start = new int[capacity];
+        nextSegment = new int[capacity];
+        prevSegment = new int[capacity];
+        reversed = new boolean[capacity];
+        for (int i = 0, u = 0; i < n; i++, u = next[u]) {
+            order[i] = u;
+        }
+        layOut();
+    }
+
+    /**
+     * Cut order into segments of groupSize cities, none of them reversed.
+     */
+    private void layOut() {
+        segments = 0;
+        for (int from = 0; from < n; from += groupSize) {
+            int s = segments++;
+            low[s] = from;
+            high[s] = Math.min(n, from + groupSize) - 1;
+            reversed[s] = false;
+            start[s] = from;
+            for (int i = low[s]; i <= high[s]; i++) {
+                slot[order[i]] = i;
+                parent[order[i]] = s;
+            }
+        }
+        for (int s = 0; s < segments; s++) {
+            nextSegment[s] = s + 1 == segments ? 0 : s + 1;
+            prevSegment[s] = s == 0 ? segments - 1 : s - 1;
+        }
+    }
+
+    /**
+     * Write the cities in the order of the tour into order, and lay them out again.
+     */
+    private void rebuild() {
+        for (int i = 0, u = order[0]; i < n; i++, u = next(u)) {
+            scratch[i] = u;
+        }
+        System.arraycopy(scratch, 0, order, 0, n);
+        layOut();
+    }
+
+    private int first(int s) {
+        return reversed[s] ? order[high[s]] : order[low[s]];
+    }
+
+    private int last(int s) {
+        return reversed[s] ? order[low[s]] : order[high[s]];
+    }
+
+    int next(int a) {
+        int s = parent[a];
+        int i = slot[a];
+        if (reversed[s]) {
+            if (i > low[s]) {
+                return order[i - 1];
+            }
+        }
+        else if (i < high[s]) {
+            return order[i + 1];
+        }
+        return first(nextSegment[s]);
+    }
+
+    int prev(int a) {
+        int s = parent[a];
+        int i = slot[a];
+        if (reversed[s]) {
+            if (i < high[s]) {
+                return order[i + 1];
+            }
+        }
+        else if (i > low[s]) {
+            return order[i - 1];
+        }
+        return last(prevSegment[s]);
+    }
+
+    /**
+     * @return the place of a within its segment, in the direction of the tour.
+     */
+    private int offset(int a) {
+        int s = parent[a];
+        return reversed[s] ? high[s] - slot[a] : slot[a] - low[s];
+    }
+
+    /**
+     * @return how many cities a is after the first city of the list.
+     */
+    private int sequence(int a) {
+        return start[parent[a]] + offset(a);
+    }
+
+    /**
+     * @return true if going forward from a we reach b before passing c, a, b and c included.
+     */
+    boolean between(int a, int b, int c) {
+        int i = sequence(a);
+        int j = sequence(b);
+        int k = sequence(c);
+        if (i <= k) {
+            return i <= j && j <= k;
+        }
+        return j >= i || j <= k;
+    }
+
+    /**
+     * Replace the edges (a, b) and (c, d) by (a, c) and (b, d), where b follows a and d follows c
+     * in the same direction of the tour, by reversing the path from b to c.
+     */
+    void move(int a, int b, int c, int d) {
+        if (next(a) == b) {
+            reverse(b, c);
+        }
+        else {
+            reverse(c, b);
+        }
+    }
+
+    /**
+     * Reverse the path which goes forward from a to b.
+     */
+    void reverse(int a, int b) {
+        int length = sequence(b) - sequence(a);
+        if (length < 0) {
+            length += n;
+        }
+        length++;
+        if (2 * length > n) { // reverse the rest of the tour instead
+            int from = next(b);
+            b = prev(a);
+            a = from;
+            length = n - length;
+        }
+        if (length <= SWAP_GROUPS * groupSize) {
+            // swap the cities from both ends inwards, in runs where both ends stay within their segments
+            int s = parent[a];
+            int i = slot[a];
+            int t = parent[b];
+            int j = slot[b];
+            for (int half = length / 2; half > 0; ) {
+                int di = reversed[s] ? -1 : 1;
+                int dj = reversed[t] ? 1 : -1;
+                int room = Math.min(di > 0 ? high[s] - i : i - low[s], dj < 0 ? j - low[t] : high[t] - j) + 1;
+                int run = Math.min(half, room);
+                half -= run;
+                for (; run > 0; run--, i += di, j += dj) {
+                    int u = order[i];
+                    int v = order[j];
+                    order[i] = v;
+                    slot[v] = i;
+                    order[j] = u;
+                    slot[u] = j;
+                    if (s != t) {
+                        parent[v] = s;
+                        parent[u] = t;
+                    }
+                }
+                if (i < low[s] || i > high[s]) {
+                    s = nextSegment[s];
+                    i = reversed[s] ? high[s] : low[s];
+                }
+                if (j < low[t] || j > high[t]) {
+                    t = prevSegment[t];
+                    j = reversed[t] ? low[t] : high[t];
+                }
+            }
+            return;
+        }
+        if (segments + 2 > capacity) {
+            rebuild();
+        }
+        split(a);
+        split(next(b));
+
+        // flip the segments from the one of a to the one of b, then link them in between the segments around them
+        // the other way
+        int from = parent[a];
+        int to = parent[b];
+        int before = prevSegment[from];
+        int after = nextSegment[to];
+        for (int s = from; ; ) {
+            int following = nextSegment[s];
+            reversed[s] = !reversed[s];
+            nextSegment[s] = prevSegment[s];
+            prevSegment[s] = following;
+            if (s == to) {
+                break;
+            }
+            s = following;
+        }
+        nextSegment[before] = to;
+        prevSegment[to] = before;
+        nextSegment[from] = after;
+        prevSegment[after] = from;
+        renumber(before);
+    }
+
+    /**
+     * Split the segment of a so a is the first city of its segment. The smaller part goes to a new segment.
+     */
+    private void split(int a) {
+        int s = parent[a];
+        if (first(s) == a) {
+            return;
+        }
+        // the part of s before a in the direction of the tour, and the part from a on
+        int i = slot[a];
+        int headLow = reversed[s] ? i + 1 : low[s];
+        int headHigh = reversed[s] ? high[s] : i - 1;
+        int tailLow = reversed[s] ? low[s] : i;
+        int tailHigh = reversed[s] ? i : high[s];
+        int t = segments++;
+        reversed[t] = reversed[s];
+        if (headHigh - headLow <= tailHigh - tailLow) {
+            low[t] = headLow;
+            high[t] = headHigh;
+            low[s] = tailLow;
+            high[s] = tailHigh;
+            int before = prevSegment[s];
+            nextSegment[before] = t;
+            prevSegment[t] = before;
+            nextSegment[t] = s;
+            prevSegment[s] = t;
+        }
+        else {
+            low[t] = tailLow;
+            high[t] = tailHigh;
+            low[s] = headLow;
+            high[s] = headHigh;
+            int after = nextSegment[s];
+            nextSegment[s] = t;
+            prevSegment[t] = s;
+            nextSegment[t] = after;
+            prevSegment[after] = t;
+        }
+        for (int j = low[t]; j <= high[t]; j++) {
+            parent[order[j]] = t;
+        }
+        renumber(s);
+    }
+
+    /**
+     * Count the cities before each segment in the order of the list, starting from s.
+     */
+    private void renumber(int s) {
+        for (int k = 0, cities = 0; k < segments; k++, s = nextSegment[s]) {
+            start[s] = cities;
+            cities += high[s] - low[s] + 1;
+        }
+    }
+
+    /**
+     * Write the tour as a successor array.
+     */
+    void toNext(int[] next) {
+        for (int u = 0; u < n; u++) {
+            next[u] = next(u);
+        }
+    }
+}
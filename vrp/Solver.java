@@ -3,35 +3,62 @@ import java.lang.reflect.Array;
 import java.util.*;
 import java.lang.Math;
 
+/**
+ * A FIFO tabu of at most size ids in [0, universe). The ids are kept in a ring buffer, and stamp[id] is the
+ * number of pushes up to and including the last push of id, so id is in the tabu iff it was pushed after
+ * the last popped entry. No operation allocates or boxes, and clear() is O(1).
+ */
 class Tabu {
-    private int size;
-    LinkedList<Integer> tabuQueue;
-    private HashSet<Integer> tabuSet;
+    private final int size;
+    private final int[] queue;
+    private final int[] stamp;
+    private int pushed;
+    private int popped;
 
-    Tabu(int size) {
+    Tabu(int size, int universe) {
         this.size = size;
-        tabuSet = new HashSet<>();
-        tabuQueue = new LinkedList<>();
+        queue = new int[size + 1];
+        stamp = new int[universe];
     }
 
+    /**
+     * Like the set it replaces, an id outside [0, universe) such as -1 is never in the tabu.
+     */
     boolean contains(int node) {
-        return tabuSet.contains(node);
+        return node >= 0 && node < stamp.length && stamp[node] > popped;
     }
 
-    void push(int node) {
-        if (tabuSet.contains(node)) {
-            return;
+    /**
+     * @return the id which left the tabu to make room for node, or -1.
+     */
+    int push(int node) {
+        if (contains(node)) {
+            return -1;
         }
-        tabuSet.add(node);
-        tabuQueue.addLast(node);
-        if (tabuSet.size() > size) {
-            pop();
+        queue[pushed % queue.length] = node;
+        stamp[node] = ++pushed;
+        if (pushed - popped > size) {
+            return pop();
         }
+        return -1;
     }
 
-    void pop() {
-        int node = tabuQueue.removeFirst();
-        tabuSet.remove(node);
+    int pop() {
+        if (pushed == popped) {
+            throw new NoSuchElementException();
+        }
+        return queue[popped++ % queue.length];
+    }
+
+    /**
+     * Empty the tabu. The stamps only have to be reset once the counters get large.
+     */
+    void clear() {
+        if (pushed > Integer.MAX_VALUE / 2) {
+            Arrays.fill(stamp, 0);
+            pushed = 0;
+        }
+        popped = pushed;
     }
 }
 
@@ -247,10 +274,11 @@ public class Solver {
         int tryLimit = 1000; // todo: try a smaller value?
         float minCost = greedy(vehicleIndex);
         Integer[] best = visits.get(vehicleIndex).toArray(new Integer[sz]);
+        int tabuSize = Math.min(sz / 2 + 2, sz - 1);
+        Tabu t = new Tabu(tabuSize, nodeCount);
         while (tryCount++ < tryLimit) {
 //            System.out.println("vehicle: " + vehicleIndex + ", " + tryCount);
-            int tabuSize = Math.min(sz / 2 + 2, sz - 1);
-            Tabu t = new Tabu(tabuSize);
+            t.clear();
             float cost = greedy(vehicleIndex);
             int threshold = 20;
             int pressure = 0;